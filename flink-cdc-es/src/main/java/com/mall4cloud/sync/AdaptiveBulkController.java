@@ -0,0 +1,131 @@
+package com.mall4cloud.sync;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 按 Elasticsearch 的响应调整每批操作数与进行中的请求数（AIMD，加性增、乘性减）：
+ * <ul>
+ *     <li>请求在 targetLatency 内完成且批次基本攒满时，每批操作数增加 minActions，达到 es.bulk.max-actions 后，
+ *     每连续成功一轮（进行中请求数个响应）再增加一个并发请求，直到 es.bulk.max-in-flight-requests</li>
+ *     <li>条目被拒绝（429 等）、请求整体失败或耗时超过 targetLatency 时，两者都减半，最小为 minActions 与 1</li>
+ * </ul>
+ * 减小之前发出的请求的响应反映的仍是旧的负载，不会再次触发减小。未开启时固定使用配置的上限。
+ * 并发请求数大于 1 时，没有版本号的写入依靠 {@link InFlightDocuments} 保证同一文档的顺序，增加并发不会让旧的局部更新覆盖新的。
+ * 响应在客户端的回调线程中处理，方法需要加锁；任务线程只读取 actionsLimit
+ */
+final class AdaptiveBulkController {
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptiveBulkController.class);
+
+    private final boolean enabled;
+    private final int minActions;
+    private final int maxActions;
+    private final int maxInFlightRequests;
+    private final long targetLatencyMs;
+    private final InFlightRequestLimiter limiter;
+
+    private volatile int actionsLimit;
+    // 上次减小的时间（System.nanoTime），此前发出的请求不再触发减小
+    private long lastDecreaseNanos;
+    // 上次增加并发数以来连续成功的响应数
+    private int successesSinceIncrease;
+
+    AdaptiveBulkController(boolean enabled, int minActions, int maxActions, int maxInFlightRequests,
+                           long targetLatencyMs) {
+        if (maxActions < 1) {
+            throw new IllegalArgumentException("maxActions must be positive, got " + maxActions);
+        }
+        if (maxInFlightRequests < 1) {
+            throw new IllegalArgumentException("maxInFlightRequests must be at least 1, got " + maxInFlightRequests);
+        }
+        if (enabled && (minActions < 1 || targetLatencyMs < 1)) {
+            throw new IllegalArgumentException("Invalid adaptive bulk sizing: min actions " + minActions
+                    + ", target latency " + targetLatencyMs + " ms");
+        }
+        this.enabled = enabled;
+        this.minActions = Math.min(minActions, maxActions);
+        this.maxActions = maxActions;
+        this.maxInFlightRequests = maxInFlightRequests;
+        this.targetLatencyMs = targetLatencyMs;
+        // 开启时从最小值开始增长
+        this.actionsLimit = enabled ? this.minActions : maxActions;
+        this.limiter = new InFlightRequestLimiter(enabled ? 1 : maxInFlightRequests);
+        this.lastDecreaseNanos = System.nanoTime();
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    int actionsLimit() {
+        return actionsLimit;
+    }
+
+    int maxActions() {
+        return maxActions;
+    }
+
+    int maxInFlightRequests() {
+        return maxInFlightRequests;
+    }
+
+    InFlightRequestLimiter limiter() {
+        return limiter;
+    }
+
+    /**
+     * 收到 bulk 响应，startNanos 为请求发出的时间，rejected 为需要重试的条目数
+     */
+    synchronized void onResponse(long startNanos, int actions, long latencyMs, int rejected) {
+        if (!enabled) {
+            return;
+        }
+        if (rejected > 0) {
+            decrease(startNanos, rejected + " of " + actions + " operations rejected");
+        } else if (latencyMs > targetLatencyMs) {
+            decrease(startNanos, "latency " + latencyMs + " ms above target");
+        } else if (actions * 2 >= actionsLimit) {
+            // 低流量时按时间刷新的小批次说明不了 Elasticsearch 还能承受更大的批次
+            increase();
+        }
+    }
+
+    /**
+     * 整个 bulk 请求失败，如超时或连接被拒绝
+     */
+    synchronized void onFailure(long startNanos) {
+        if (enabled) {
+            decrease(startNanos, "request failed");
+        }
+    }
+
+    private void increase() {
+        if (actionsLimit < maxActions) {
+            actionsLimit = Math.min(maxActions, actionsLimit + minActions);
+            LOG.debug("Increased bulk size to {} actions", actionsLimit);
+            return;
+        }
+        int inFlightLimit = limiter.limit();
+        if (inFlightLimit < maxInFlightRequests && ++successesSinceIncrease >= inFlightLimit) {
+            successesSinceIncrease = 0;
+            limiter.setLimit(inFlightLimit + 1);
+            LOG.debug("Increased max in-flight bulk requests to {}", inFlightLimit + 1);
+        }
+    }
+
+    private void decrease(long startNanos, String reason) {
+        successesSinceIncrease = 0;
+        if (startNanos - lastDecreaseNanos < 0) {
+            return;
+        }
+        lastDecreaseNanos = System.nanoTime();
+        int actions = Math.max(minActions, actionsLimit / 2);
+        int inFlight = Math.max(1, limiter.limit() / 2);
+        if (actions == actionsLimit && inFlight == limiter.limit()) {
+            return;
+        }
+        actionsLimit = actions;
+        limiter.setLimit(inFlight);
+        LOG.info("Decreased bulk size to {} actions and max in-flight requests to {}: {}", actions, inFlight, reason);
+    }
+}
@@ -0,0 +1,218 @@
+package com.mall4cloud.sync;
+
+import org.apache.flink.api.common.functions.OpenContext;
+import org.apache.flink.api.common.functions.RichMapFunction;
+import org.apache.flink.api.common.state.ListState;
+import org.apache.flink.api.common.state.ListStateDescriptor;
+import org.apache.flink.api.common.typeinfo.Types;
+import org.apache.flink.cdc.connectors.mysql.debezium.reader.BinlogReaderMetrics;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.metrics.Gauge;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.runtime.state.FunctionInitializationContext;
+import org.apache.flink.runtime.state.FunctionSnapshotContext;
+import org.apache.flink.streaming.api.checkpoint.CheckpointedFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serial;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 与 CDC source 链接在一起的透传算子，把同一 subtask 中 binlog 读取线程的统计注册为 Flink 指标（binlogReader 分组）：
+ * <ul>
+ *     <li>queueDepth / queueCapacity：binlog 读取线程与过滤线程之间的队列，持续接近容量说明下游处理不过来</li>
+ *     <li>lastBatchSize、polledEvents、emittedEvents、filteredEvents：每次取出的事件数与被快照分片过滤掉的事件数</li>
+ *     <li>pollWaitMs、filterTimeUs：最近一批等待事件与过滤的耗时，等待时间长说明瓶颈在 MySQL 一侧</li>
+ *     <li>binlogFile、binlogPosition、binlogLagBytes、binlogLagSeconds：当前读取位置与 MySQL 最新位置的差距</li>
+ * </ul>
+ * 只有读取 binlog 分片的 subtask 有数据，其它 subtask 的指标为 0，延迟未知时为 -1。
+ * <p>
+ * 开启外部版本号时，同时在状态中记录已读取的最大版本号：MySQL 最新的 binlog 文件序号小于已读取过的序号
+ * （RESET MASTER、切换到 binlog 序号更小的实例），之后的变更在 Elasticsearch 中都会被当作旧版本跳过，
+ * 此时使作业失败而不是继续运行，恢复方式见 README
+ */
+public class BinlogReaderMetricsReporter extends RichMapFunction<ChangedData, ChangedData>
+        implements CheckpointedFunction {
+    private static final Logger LOG = LoggerFactory.getLogger(BinlogReaderMetricsReporter.class);
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final Configuration config;
+
+    private transient BinlogReaderMetrics metrics;
+    private transient ScheduledExecutorService scheduler;
+    private transient Connection connection;
+    // MySQL 最新 binlog 位置与当前读取位置之间的字节数，-1 表示未知
+    private transient volatile long lagBytes;
+    // 已读取的最大外部版本号，恢复时取所有 subtask 中的最大值
+    private transient ListState<Long> highestVersionState;
+    private transient volatile long highestVersion;
+    // 检测到 binlog 序号回退时的错误信息，由处理线程抛出
+    private transient volatile String versionRegression;
+
+    public BinlogReaderMetricsReporter(Configuration config) {
+        this.config = config;
+    }
+
+    @Override
+    public void open(OpenContext openContext) {
+        metrics = BinlogReaderMetrics.forSubtask(getRuntimeContext().getTaskInfo().getIndexOfThisSubtask());
+        lagBytes = -1;
+
+        MetricGroup group = getRuntimeContext().getMetricGroup().addGroup("binlogReader");
+        group.gauge("queueDepth", (Gauge<Integer>) metrics::getQueueDepth);
+        group.gauge("queueCapacity", (Gauge<Integer>) metrics::getQueueCapacity);
+        group.gauge("lastBatchSize", (Gauge<Integer>) metrics::getLastBatchSize);
+        group.gauge("polledEvents", (Gauge<Long>) metrics::getPolledEvents);
+        group.gauge("emittedEvents", (Gauge<Long>) metrics::getEmittedEvents);
+        group.gauge("filteredEvents", (Gauge<Long>) metrics::getFilteredEvents);
+        group.gauge("pollWaitMs", (Gauge<Long>) () -> TimeUnit.NANOSECONDS.toMillis(metrics.getLastPollWaitNanos()));
+        group.gauge("filterTimeUs", (Gauge<Long>) () -> TimeUnit.NANOSECONDS.toMicros(metrics.getLastFilterNanos()));
+        group.gauge("binlogFile", (Gauge<String>) () -> String.valueOf(metrics.getBinlogFilename()));
+        group.gauge("binlogPosition", (Gauge<Long>) metrics::getBinlogPosition);
+        group.gauge("binlogLagBytes", (Gauge<Long>) () -> lagBytes);
+        group.gauge("binlogLagSeconds", (Gauge<Long>) this::lagSeconds);
+
+        long interval = config.get(SyncOptions.SOURCE_METRICS_LAG_INTERVAL).toMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "binlog-lag-" + getRuntimeContext().getTaskInfo().getIndexOfThisSubtask());
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::updateLag, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void initializeState(FunctionInitializationContext context) throws Exception {
+        highestVersionState = context.getOperatorStateStore().getUnionListState(
+                new ListStateDescriptor<>("highest-external-version", Types.LONG));
+        long highest = 0;
+        if (context.isRestored()) {
+            for (Long version : highestVersionState.get()) {
+                highest = Math.max(highest, version);
+            }
+        }
+        highestVersion = highest;
+    }
+
+    @Override
+    public void snapshotState(FunctionSnapshotContext context) throws Exception {
+        highestVersionState.update(List.of(highestVersion));
+    }
+
+    @Override
+    public ChangedData map(ChangedData value) {
+        if (versionRegression != null) {
+            throw new IllegalStateException(versionRegression);
+        }
+        if (value.hasVersion() && value.getVersion() > highestVersion) {
+            highestVersion = value.getVersion();
+        }
+        return value;
+    }
+
+    /**
+     * 已追上最新位置时为 0，否则为最后一个已读取事件的 MySQL 时间戳距今的秒数
+     */
+    private long lagSeconds() {
+        long bytes = lagBytes;
+        long timestamp = metrics.getLastEventTimestamp();
+        if (bytes == 0) {
+            return 0;
+        }
+        if (bytes < 0 || timestamp <= 0) {
+            return -1;
+        }
+        return Math.max(0, (System.currentTimeMillis() - timestamp) / 1000);
+    }
+
+    private void updateLag() {
+        String currentFile = metrics.getBinlogFilename();
+        if (!metrics.isReadingBinlog() || currentFile == null) {
+            lagBytes = -1;
+            return;
+        }
+        long currentPosition = metrics.getBinlogPosition();
+        try {
+            if (connection == null || !connection.isValid(1)) {
+                closeConnection();
+                connection = SyncConfig.openMysqlConnection(config);
+            }
+            // binlog 文件按序号递增，当前文件剩余的字节数加上之后所有文件的大小即为延迟。
+            // 按解析出的序号比较而不是文件名，序号超过补零的位数（.999999 之后为 .1000000）时文件名的字典序不再正确
+            long currentFileIndex = CdcJsonToChangedDataConverter.binlogFileIndex(currentFile);
+            long lag = 0;
+            boolean found = false;
+            long newestFileIndex = -1;
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("SHOW BINARY LOGS")) {
+                while (rs.next()) {
+                    String file = rs.getString("Log_name");
+                    long size = rs.getLong("File_size");
+                    long fileIndex = CdcJsonToChangedDataConverter.binlogFileIndex(file);
+                    newestFileIndex = Math.max(newestFileIndex, fileIndex);
+                    int order = Long.compare(fileIndex, currentFileIndex);
+                    if (order == 0) {
+                        found = true;
+                        lag += Math.max(0, size - currentPosition);
+                    } else if (order > 0) {
+                        lag += size;
+                    }
+                }
+            }
+            lagBytes = found ? lag : -1;
+            checkVersionRegression(newestFileIndex);
+        } catch (SQLException e) {
+            LOG.warn("Failed to query binlog files for lag metrics: {}", e.getMessage());
+            lagBytes = -1;
+            closeConnection();
+        }
+    }
+
+    /**
+     * 外部版本号的高 32 位是 binlog 文件序号。MySQL 上最新的文件序号小于已读取过的序号时，
+     * 之后的变更版本号都小于已写入的文档，会被 external_gte 拒绝而不再更新索引
+     */
+    private void checkVersionRegression(long newestFileIndex) {
+        long highestFileIndex = highestVersion >>> 32;
+        if (!config.get(SyncOptions.BULK_EXTERNAL_VERSION) || versionRegression != null
+                || newestFileIndex < 0 || newestFileIndex >= highestFileIndex) {
+            return;
+        }
+        versionRegression = String.format("Binlog file index went backwards: newest binlog file index on MySQL is %d, "
+                + "but changes up to file index %d were already written with external versions (RESET MASTER or "
+                + "failover to another server?). Later changes would be rejected as stale by Elasticsearch; "
+                + "rebuild the indices or disable es.bulk.external-version, then restart without the old checkpoint",
+                newestFileIndex, highestFileIndex);
+        LOG.error(versionRegression);
+    }
+
+    private void closeConnection() {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                LOG.debug("Failed to close MySQL connection", e);
+            }
+            connection = null;
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        closeConnection();
+    }
+}
@@ -8,9 +8,14 @@ import org.apache.flink.cdc.connectors.shaded.org.apache.kafka.connect.data.Stru
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 /**
  * 将 Debezium JSON 格式转换为 ChangedData 对象
@@ -22,6 +27,14 @@ public class CdcJsonToChangedDataConverter implements MapFunction<Struct, Change
     public static final String BEFORE = "before";
     public static final String AFTER = "after";
     public static final String SOURCE = "source";
+    public static final String BINLOG_FILE = "file";
+    public static final String BINLOG_POSITION = "pos";
+    public static final String OP = "op";
+
+    /**
+     * 表结构变更会产生新的 schema 实例，超过该数量时清空缓存，避免频繁 DDL 导致缓存无限增长
+     */
+    private static final int MAX_CACHED_SCHEMAS = 256;
 
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
@@ -35,30 +48,157 @@ public class CdcJsonToChangedDataConverter implements MapFunction<Struct, Change
             "d", 2,
             "r", 3);
 
+    /**
+     * 按 Debezium envelope schema 缓存字段位置。每张表的 envelope schema 是同一个实例，
+     * 因此按引用比较即可，避免 ConnectSchema.hashCode/equals 的深度比较
+     */
+    private transient Map<Schema, EnvelopeLayout> layoutCache;
+
+    /**
+     * 为 true 时直接把行数据序列化为 JSON 字节（ChangedData.document），不再构建 Map
+     */
+    private final boolean directJson;
+    /**
+     * 下游需要读取列值的表（如构建订单宽表的三张表），不受 directJson 影响，始终使用 Map
+     */
+    private final Set<String> mapTables;
+    /**
+     * 为 true 时更新事件只携带 before 与 after 之间发生变化的列，sink 以局部更新写入
+     */
+    private final boolean partialUpdate;
+    /**
+     * 按表排除、列投影与行过滤规则
+     */
+    private final TableFilters filters;
+    /**
+     * 按表配置的索引名与路由
+     */
+    private final IndexRouting indexRouting;
+    private transient StructJsonSerializer jsonSerializer;
+
+    public CdcJsonToChangedDataConverter() {
+        this(false);
+    }
+
+    public CdcJsonToChangedDataConverter(boolean directJson) {
+        this(directJson, false);
+    }
+
+    public CdcJsonToChangedDataConverter(boolean directJson, boolean partialUpdate) {
+        this(directJson, partialUpdate, TableFilters.NONE);
+    }
+
+    public CdcJsonToChangedDataConverter(boolean directJson, boolean partialUpdate, TableFilters filters) {
+        this(directJson, partialUpdate, filters, IndexRouting.NONE);
+    }
+
+    public CdcJsonToChangedDataConverter(boolean directJson, boolean partialUpdate, TableFilters filters,
+                                         IndexRouting indexRouting) {
+        this(directJson, partialUpdate, filters, indexRouting, Set.of());
+    }
+
+    public CdcJsonToChangedDataConverter(boolean directJson, boolean partialUpdate, TableFilters filters,
+                                         IndexRouting indexRouting, Set<String> mapTables) {
+        this.directJson = directJson;
+        this.mapTables = mapTables;
+        this.partialUpdate = partialUpdate;
+        this.filters = filters;
+        this.indexRouting = indexRouting;
+    }
+
     @Override
     public ChangedData map(Struct struct) throws Exception {
         try {
-            final Struct source = struct.getStruct(SOURCE);
-            final String database = source.getString("db");
-            final String table = source.getString("table");
-            // 确定主键（这里假设主键名为 "id"，实际应用中可能需要动态确定）
-            String primaryKeyName = determinePrimaryKey(table);
-
-            // 获取操作类型
-            String op = struct.getString("op");
+            final EnvelopeLayout layout = layoutFor(struct);
+            final Struct source = (Struct) struct.get(layout.source);
+            final String database = (String) source.get(layout.database);
+            final String table = (String) source.get(layout.table);
+            if (filters.isExcluded(table)) {
+                return null;
+            }
 
+            // 获取操作类型。sourceOp 为原始的操作类型，被过滤的行转换为删除后仍按它判断是否为快照数据
+            final String sourceOp = (String) struct.get(layout.op);
+            String op = sourceOp;
+            boolean snapshot = "r".equals(sourceOp);
 
-            Map<String, Object> data = switch (op) {
-                case "c", "u", "r" -> structToMap(struct.getStruct(AFTER));
-                case "d" -> structToMap(struct.getStruct(BEFORE));
+            Struct row = switch (op) {
+                case "c", "u", "r" -> (Struct) struct.get(layout.after);
+                case "d" -> (Struct) struct.get(layout.before);
                 default -> throw new IllegalArgumentException("Unsupported operation: " + op);
             };
+            RowLayout rowLayout = layout.rowLayout(row.schema(), table);
+
+            // 行过滤在构建任何对象之前进行。更新事件还要看 before：
+            // 原本满足条件、更新后不再满足的行转换为删除；原本不满足的行此前未写入，需要写入完整文档。
+            // 有其它表依附的表（订单宽表中的 order）被过滤的行总是作为删除输出，见 TableFilters
+            Struct before = "u".equals(op) ? (Struct) struct.get(layout.before) : null;
+            boolean beforeIndexed = before != null && rowLayout.matches(before);
+            if (!rowLayout.matches(row)) {
+                if (!beforeIndexed && !filters.deletesFilteredRows(table)) {
+                    return null;
+                }
+                op = "d";
+            }
 
-            String primaryKeyValue = data.get(primaryKeyName).toString();
+            String primaryKeyValue = String.valueOf(row.get(rowLayout.primaryKey));
 
+            // 更新事件只取变化的列；快照读取（r）与新增仍写入完整文档
+            int[] changedFields = null;
+            if (partialUpdate && "u".equals(op)) {
+                if (beforeIndexed) {
+                    changedFields = rowLayout.changedFields(before, row);
+                    if (changedFields != null && changedFields.length == 0) {
+                        // 没有列发生变化，无需写入
+                        return null;
+                    }
+                }
+            }
 
             // 创建 ChangedData 对象
-            return new ChangedData(op, database, table, primaryKeyName, primaryKeyValue, data);
+            ChangedData changedData;
+            if (changedFields != null) {
+                if (rowLayout.directJson) {
+                    changedData = new ChangedData(op, database, table, rowLayout.primaryKeyName, primaryKeyValue, null);
+                    changedData.setDocument(serializer().serialize(row, rowLayout.jsonLayout(), changedFields));
+                } else {
+                    changedData = new ChangedData(op, database, table, rowLayout.primaryKeyName, primaryKeyValue,
+                            structToMap(row, rowLayout, changedFields));
+                }
+                changedData.setPartialUpdate(true);
+            } else if (rowLayout.directJson) {
+                // 删除操作只需要主键，不序列化文档
+                changedData = new ChangedData(op, database, table, rowLayout.primaryKeyName, primaryKeyValue, null);
+                if (!"d".equals(op)) {
+                    changedData.setDocument(serializer().serialize(row, rowLayout.jsonLayout()));
+                }
+            } else {
+                Map<String, Object> data = structToMap(row, rowLayout);
+                changedData = new ChangedData(op, database, table, rowLayout.primaryKeyName, primaryKeyValue, data);
+            }
+            String binlogFile = (String) source.get(layout.binlogFile);
+            Long binlogPosition = (Long) source.get(layout.binlogPosition);
+            changedData.setBinlogFile(binlogFile);
+            changedData.setBinlogPosition(binlogPosition == null ? 0L : binlogPosition);
+            // 快照读取的数据不带有意义的 binlog 位置，不设置版本号，直接覆盖写入
+            // 被过滤而转换为删除的快照行也一样，否则它可能覆盖 binlog 中位置更小的真实变更
+            if (!snapshot && binlogFile != null && !binlogFile.isEmpty() && binlogPosition != null) {
+                changedData.setVersion(toExternalVersion(binlogFile, binlogPosition));
+            }
+            // 快照数据的 ts_ms 为 0，只对增量变更记录提交时间，用于统计同步延迟。binlog 事件头的时间戳精度为秒
+            if (!snapshot && layout.sourceTimestamp != null) {
+                Long sourceTimestamp = (Long) source.get(layout.sourceTimestamp);
+                changedData.setSourceTimestamp(sourceTimestamp == null ? 0L : sourceTimestamp);
+            }
+            // 索引名与路由由完整的行计算，局部更新与删除也能定位到原文档
+            IndexRouting.Rule rule = rowLayout.indexRule;
+            if (rule != null) {
+                if (rowLayout.indexFields != null) {
+                    changedData.setIndex(rule.index(row, rowLayout.indexFields));
+                }
+                changedData.setRouting(rule.routing(row, rowLayout.routingField));
+            }
+            return changedData;
         } catch (Exception e) {
             LOG.error("Error converting JSON to ChangedData: {}", struct, e);
             throw e;
@@ -66,18 +206,65 @@ public class CdcJsonToChangedDataConverter implements MapFunction<Struct, Change
     }
 
     /**
-     * 将 JsonNode 转换为 Map
+     * 将 binlog 位置编码为单调递增的 long：高 32 位为 binlog 文件序号（如 mysql-bin.000123 中的 123），
+     * 低 32 位为事件在文件中的偏移量（binlog 文件最大 1GB，不会超过 32 位）。
+     * 同一事件内的多行变更版本号相同，配合 external_gte 时后到者生效。
+     * 只在同一套 binlog 序号内单调：RESET MASTER 或切换到序号更小的实例后版本号回退，
+     * 由 BinlogReaderMetricsReporter 检测并使作业失败
      */
-    private Map<String, Object> structToMap(Struct struct) {
-        Map<String, Object> map = new HashMap<>();
+    static long toExternalVersion(String binlogFile, long binlogPosition) {
+        return (binlogFileIndex(binlogFile) << 32) | (binlogPosition & 0xFFFFFFFFL);
+    }
 
-        Schema schema = struct.schema();
-        List<Field> fields = schema.fields();
+    /**
+     * binlog 文件名中的序号，如 mysql-bin.000123 为 123
+     */
+    static long binlogFileIndex(String binlogFile) {
+        int dot = binlogFile.lastIndexOf('.');
+        return Long.parseLong(binlogFile.substring(dot + 1));
+    }
 
-        for (Field field : fields) {
-            String name = field.name();
-            Object value = struct.get(name);
-            map.put(name, value);
+    private StructJsonSerializer serializer() {
+        if (jsonSerializer == null) {
+            jsonSerializer = new StructJsonSerializer();
+        }
+        return jsonSerializer;
+    }
+
+    private EnvelopeLayout layoutFor(Struct envelope) {
+        if (layoutCache == null) {
+            layoutCache = new IdentityHashMap<>();
+        }
+        Schema schema = envelope.schema();
+        EnvelopeLayout layout = layoutCache.get(schema);
+        if (layout == null) {
+            if (layoutCache.size() >= MAX_CACHED_SCHEMAS) {
+                layoutCache.clear();
+            }
+            layout = new EnvelopeLayout(schema);
+            layoutCache.put(schema, layout);
+        }
+        return layout;
+    }
+
+    /**
+     * 将 Struct 转换为 Map：按预先解析好的字段直接取值，并按字段数预设容量，避免扩容
+     */
+    private Map<String, Object> structToMap(Struct struct, RowLayout layout) {
+        Map<String, Object> map = HashMap.newHashMap(layout.fields.length);
+
+        for (int i = 0; i < layout.fields.length; i++) {
+            map.put(layout.names[i], struct.get(layout.fields[i]));
+        }
+
+        return map;
+    }
+
+    private Map<String, Object> structToMap(Struct struct, RowLayout layout, int[] fieldIndexes) {
+        Map<String, Object> map = HashMap.newHashMap(fieldIndexes.length);
+
+        for (int i : fieldIndexes) {
+            map.put(layout.names[i], struct.get(layout.fields[i]));
         }
 
         return map;
@@ -96,4 +283,154 @@ public class CdcJsonToChangedDataConverter implements MapFunction<Struct, Change
             default -> "id";
         };
     }
+
+    /**
+     * envelope 中常用字段的位置，Struct.get(Field) 直接按下标取值，省去按名字查找
+     */
+    private final class EnvelopeLayout {
+        private final Field op;
+        private final Field before;
+        private final Field after;
+        private final Field source;
+        private final Field database;
+        private final Field table;
+        private final Field binlogFile;
+        private final Field binlogPosition;
+        // source.ts_ms：事件在 MySQL 中提交的时间
+        private final Field sourceTimestamp;
+        // before 与 after 共用同一个行 schema
+        private Schema rowSchema;
+        private RowLayout rowLayout;
+
+        private EnvelopeLayout(Schema envelopeSchema) {
+            this.op = envelopeSchema.field(OP);
+            this.before = envelopeSchema.field(BEFORE);
+            this.after = envelopeSchema.field(AFTER);
+            this.source = envelopeSchema.field(SOURCE);
+            Schema sourceSchema = source.schema();
+            this.database = sourceSchema.field("db");
+            this.table = sourceSchema.field("table");
+            this.binlogFile = sourceSchema.field(BINLOG_FILE);
+            this.binlogPosition = sourceSchema.field(BINLOG_POSITION);
+            this.sourceTimestamp = sourceSchema.field(TS_MS);
+        }
+
+        private RowLayout rowLayout(Schema schema, String tableName) {
+            if (rowSchema != schema) {
+                rowLayout = new RowLayout(schema, determinePrimaryKey(tableName),
+                        filters.includedColumns(tableName), filters.rowConditions(tableName),
+                        indexRouting.rule(tableName), directJson && !mapTables.contains(tableName));
+                rowSchema = schema;
+            }
+            return rowLayout;
+        }
+    }
+
+    /**
+     * 行数据的字段数组（已按列投影裁剪）、主键字段与行过滤条件，每个表结构只解析一次
+     */
+    private static final class RowLayout {
+        private final Field[] fields;
+        private final String[] names;
+        // 主键与外键列，局部更新时总是保留
+        private final boolean[] keyColumns;
+        private final String primaryKeyName;
+        private final Field primaryKey;
+        // 该表是否直接序列化为 JSON 字节
+        private final boolean directJson;
+        private StructJsonSerializer.Layout jsonLayout;
+
+        // 行过滤条件对应的字段，与 conditions 一一对应
+        private final Field[] conditionFields;
+        private final TableFilters.Condition[] conditions;
+
+        // 索引名与路由规则，没有配置时为 null；索引名就是表名时 indexFields 为 null
+        private final IndexRouting.Rule indexRule;
+        private final Field[] indexFields;
+        private final Field routingField;
+
+        private RowLayout(Schema rowSchema, String primaryKeyName, Set<String> includedColumns,
+                          List<TableFilters.Condition> rowConditions, IndexRouting.Rule indexRule,
+                          boolean directJson) {
+            List<Field> fieldList = new ArrayList<>(rowSchema.fields().size());
+            for (Field field : rowSchema.fields()) {
+                if (includedColumns == null || includedColumns.contains(field.name())
+                        || field.name().equals(primaryKeyName) || field.name().endsWith("_id")) {
+                    fieldList.add(field);
+                }
+            }
+            this.fields = fieldList.toArray(new Field[0]);
+            this.conditions = rowConditions.toArray(new TableFilters.Condition[0]);
+            this.conditionFields = new Field[conditions.length];
+            for (int i = 0; i < conditions.length; i++) {
+                conditionFields[i] = rowSchema.field(conditions[i].column());
+                if (conditionFields[i] == null) {
+                    throw new IllegalArgumentException("Row filter column " + conditions[i].column()
+                            + " not found in schema " + rowSchema.name());
+                }
+            }
+            this.names = new String[fields.length];
+            this.keyColumns = new boolean[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                names[i] = fields[i].name();
+                keyColumns[i] = names[i].equals(primaryKeyName) || names[i].endsWith("_id");
+            }
+            // 索引名与路由用到的列即使被列投影排除也从 Struct 中读取
+            this.indexRule = indexRule;
+            this.indexFields = indexRule == null || indexRule.isDefaultIndex() ? null : indexRule.templateFields(rowSchema);
+            this.routingField = indexRule == null ? null : indexRule.routingField(rowSchema);
+            this.directJson = directJson;
+            this.primaryKeyName = primaryKeyName;
+            this.primaryKey = rowSchema.field(primaryKeyName);
+            if (primaryKey == null) {
+                throw new IllegalArgumentException("Primary key column " + primaryKeyName
+                        + " not found in schema " + rowSchema.name());
+            }
+        }
+
+        /**
+         * 行是否满足所有过滤条件
+         */
+        private boolean matches(Struct row) {
+            for (int i = 0; i < conditions.length; i++) {
+                if (!conditions[i].test(row.get(conditionFields[i]))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 比较 before 与 after，返回值发生变化的字段下标。没有任何列变化时返回空数组；
+         * 否则主键与外键列（以 _id 结尾）无论是否变化都会带上，下游按它们分区与关联（如订单宽表）。
+         * 有列变为 null 时返回 null，改为写入完整文档：序列化时省略值为 null 的字段，局部更新无法清空该列
+         */
+        private int[] changedFields(Struct before, Struct after) {
+            int[] changed = new int[fields.length];
+            int count = 0;
+            boolean anyChanged = false;
+            for (int i = 0; i < fields.length; i++) {
+                Object oldValue = before.get(fields[i]);
+                Object newValue = after.get(fields[i]);
+                boolean same = oldValue instanceof byte[] oldBytes && newValue instanceof byte[] newBytes
+                        ? Arrays.equals(oldBytes, newBytes)
+                        : Objects.equals(oldValue, newValue);
+                if (!same && newValue == null) {
+                    return null;
+                }
+                if (!same || keyColumns[i]) {
+                    changed[count++] = i;
+                    anyChanged |= !same;
+                }
+            }
+            return anyChanged ? Arrays.copyOf(changed, count) : new int[0];
+        }
+
+        private StructJsonSerializer.Layout jsonLayout() {
+            if (jsonLayout == null) {
+                jsonLayout = new StructJsonSerializer.Layout(fields);
+            }
+            return jsonLayout;
+        }
+    }
 }
@@ -2,18 +2,39 @@ package com.mall4cloud.sync;
 
 import java.io.Serial;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 public class ChangedData implements Serializable {
     @Serial
     private static final long serialVersionUID = 1L;
 
+    /**
+     * 没有外部版本号，如全量快照读取的数据
+     */
+    public static final long NO_VERSION = -1L;
+
     private String operation; // c=create, u=update, d=delete, r=read
     private String database;
     private String table;
     private String primaryKeyName;
     private String primaryKeyValue;
     private Map<String, Object> data;
+    // 预先序列化好的文档 JSON，设置后 sink 直接发送这些字节，此时 data 为 null
+    private byte[] document;
+    // 变更事件在 binlog 中的位置，快照读取时为快照开始时的位置
+    private String binlogFile;
+    private long binlogPosition;
+    // 由 binlog 位置推导出的单调递增版本号，用作 Elasticsearch 的外部版本
+    private long version = NO_VERSION;
+    // 为 true 时 data/document 只包含需要更新的字段，sink 以 update + doc_as_upsert 局部更新文档
+    private boolean partialUpdate;
+    // 变更在 MySQL 中提交的时间（binlog 事件头的时间戳，毫秒，精度为秒），0 表示未知，如快照读取的数据
+    private long sourceTimestamp;
+    // 写入的索引名，null 表示使用表名，见 IndexRouting
+    private String index;
+    // Elasticsearch 的 _routing，null 表示按文档 ID 路由
+    private String routing;
 
     public ChangedData() {
     }
@@ -76,6 +97,85 @@ public class ChangedData implements Serializable {
         this.data = data;
     }
 
+    public byte[] getDocument() {
+        return document;
+    }
+
+    public void setDocument(byte[] document) {
+        this.document = document;
+    }
+
+    public String getBinlogFile() {
+        return binlogFile;
+    }
+
+    public void setBinlogFile(String binlogFile) {
+        this.binlogFile = binlogFile;
+    }
+
+    public long getBinlogPosition() {
+        return binlogPosition;
+    }
+
+    public void setBinlogPosition(long binlogPosition) {
+        this.binlogPosition = binlogPosition;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public boolean isPartialUpdate() {
+        return partialUpdate;
+    }
+
+    public void setPartialUpdate(boolean partialUpdate) {
+        this.partialUpdate = partialUpdate;
+    }
+
+    public long getSourceTimestamp() {
+        return sourceTimestamp;
+    }
+
+    public void setSourceTimestamp(long sourceTimestamp) {
+        this.sourceTimestamp = sourceTimestamp;
+    }
+
+    public String getIndex() {
+        return index;
+    }
+
+    public void setIndex(String index) {
+        this.index = index;
+    }
+
+    public String getRouting() {
+        return routing;
+    }
+
+    public void setRouting(String routing) {
+        this.routing = routing;
+    }
+
+    public boolean hasSourceTimestamp() {
+        return sourceTimestamp > 0;
+    }
+
+    /**
+     * 文档键：表名 + 主键值，用于按文档分区，保证同一文档的变更由同一个 sink subtask 按顺序写入
+     */
+    public String getDocumentKey() {
+        return table + ":" + primaryKeyValue;
+    }
+
+    public boolean hasVersion() {
+        return version != NO_VERSION;
+    }
+
     @Override
     public String toString() {
         return "ChangedData{" +
@@ -84,7 +184,15 @@ public class ChangedData implements Serializable {
                 ", table='" + table + '\'' +
                 ", primaryKeyName='" + primaryKeyName + '\'' +
                 ", primaryKeyValue='" + primaryKeyValue + '\'' +
+                ", binlogFile='" + binlogFile + '\'' +
+                ", binlogPosition=" + binlogPosition +
+                ", version=" + version +
+                ", partialUpdate=" + partialUpdate +
+                ", sourceTimestamp=" + sourceTimestamp +
+                ", index='" + index + '\'' +
+                ", routing='" + routing + '\'' +
                 ", data=" + data +
+                ", document=" + (document == null ? "null" : new String(document, StandardCharsets.UTF_8)) +
                 '}';
     }
 }
@@ -0,0 +1,385 @@
+package com.mall4cloud.sync;
+
+import org.apache.flink.api.common.typeutils.SimpleTypeSerializerSnapshot;
+import org.apache.flink.api.common.typeutils.TypeSerializerSnapshot;
+import org.apache.flink.api.common.typeutils.base.TypeSerializerSingleton;
+import org.apache.flink.core.memory.DataInputView;
+import org.apache.flink.core.memory.DataOutputView;
+import org.apache.flink.types.StringValue;
+
+import java.io.IOException;
+import java.io.Serial;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ChangedData 的专用序列化器，替代 Kryo 通用序列化。
+ * <p>
+ * 编码格式：标志位字节、操作类型字节、库名/表名/主键名（字典编号，不在字典中时写字符串）、主键值、binlog 位置、
+ * 可选的版本号、可选的源端提交时间、可选的预序列化文档、可选的列值（每个值带一个类型标记字节，嵌套的对象与数组递归编码）
+ */
+public final class ChangedDataSerializer extends TypeSerializerSingleton<ChangedData> {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public static final ChangedDataSerializer INSTANCE = new ChangedDataSerializer();
+
+    private static final List<String> OPERATIONS = List.of("c", "u", "d", "r");
+    private static final List<String> DATABASES = List.of("mall4cloud_order");
+    private static final List<String> TABLES = List.of("order", "order_addr", "order_item", "undo_log", "orders");
+    private static final List<String> PRIMARY_KEYS = List.of("order_id", "order_addr_id", "order_item_id", "id");
+
+    private static final byte DICT_NULL = -1;
+    private static final byte DICT_INLINE = 0;
+
+    private static final int FLAG_DATA = 1;
+    private static final int FLAG_DOCUMENT = 1 << 1;
+    private static final int FLAG_VERSION = 1 << 2;
+    private static final int FLAG_PARTIAL_UPDATE = 1 << 3;
+    private static final int FLAG_SOURCE_TIMESTAMP = 1 << 4;
+    private static final int FLAG_INDEX = 1 << 5;
+    private static final int FLAG_ROUTING = 1 << 6;
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_LONG = 2;
+    private static final byte TYPE_INT = 3;
+    private static final byte TYPE_SHORT = 4;
+    private static final byte TYPE_BYTE = 5;
+    private static final byte TYPE_BOOLEAN = 6;
+    private static final byte TYPE_DOUBLE = 7;
+    private static final byte TYPE_FLOAT = 8;
+    private static final byte TYPE_DECIMAL = 9;
+    private static final byte TYPE_BYTES = 10;
+    private static final byte TYPE_DATE = 11;
+    private static final byte TYPE_MAP = 12;
+    private static final byte TYPE_LIST = 13;
+
+    private ChangedDataSerializer() {
+    }
+
+    @Override
+    public boolean isImmutableType() {
+        return false;
+    }
+
+    @Override
+    public ChangedData createInstance() {
+        return new ChangedData();
+    }
+
+    @Override
+    public ChangedData copy(ChangedData from) {
+        ChangedData copy = new ChangedData(from.getOperation(), from.getDatabase(), from.getTable(),
+                from.getPrimaryKeyName(), from.getPrimaryKeyValue(),
+                from.getData() == null ? null : copyData(from.getData()));
+        copy.setDocument(from.getDocument() == null ? null : from.getDocument().clone());
+        copy.setBinlogFile(from.getBinlogFile());
+        copy.setBinlogPosition(from.getBinlogPosition());
+        copy.setVersion(from.getVersion());
+        copy.setPartialUpdate(from.isPartialUpdate());
+        copy.setSourceTimestamp(from.getSourceTimestamp());
+        copy.setIndex(from.getIndex());
+        copy.setRouting(from.getRouting());
+        return copy;
+    }
+
+    private static Map<String, Object> copyData(Map<String, Object> data) {
+        Map<String, Object> copy = HashMap.newHashMap(data.size());
+        for (Map.Entry<String, Object> entry : data.entrySet()) {
+            copy.put(entry.getKey(), copyValue(entry.getValue()));
+        }
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object copyValue(Object value) {
+        if (value instanceof byte[] bytes) {
+            return bytes.clone();
+        } else if (value instanceof Map<?, ?> map) {
+            return copyData((Map<String, Object>) map);
+        } else if (value instanceof List<?> list) {
+            List<Object> copy = new ArrayList<>(list.size());
+            for (Object element : list) {
+                copy.add(copyValue(element));
+            }
+            return copy;
+        }
+        return value;
+    }
+
+    @Override
+    public ChangedData copy(ChangedData from, ChangedData reuse) {
+        return copy(from);
+    }
+
+    @Override
+    public int getLength() {
+        return -1;
+    }
+
+    @Override
+    public void serialize(ChangedData record, DataOutputView target) throws IOException {
+        int flags = 0;
+        if (record.getData() != null) {
+            flags |= FLAG_DATA;
+        }
+        if (record.getDocument() != null) {
+            flags |= FLAG_DOCUMENT;
+        }
+        if (record.hasVersion()) {
+            flags |= FLAG_VERSION;
+        }
+        if (record.isPartialUpdate()) {
+            flags |= FLAG_PARTIAL_UPDATE;
+        }
+        if (record.hasSourceTimestamp()) {
+            flags |= FLAG_SOURCE_TIMESTAMP;
+        }
+        if (record.getIndex() != null) {
+            flags |= FLAG_INDEX;
+        }
+        if (record.getRouting() != null) {
+            flags |= FLAG_ROUTING;
+        }
+        target.writeByte(flags);
+        writeDictionary(OPERATIONS, record.getOperation(), target);
+        writeDictionary(DATABASES, record.getDatabase(), target);
+        writeDictionary(TABLES, record.getTable(), target);
+        writeDictionary(PRIMARY_KEYS, record.getPrimaryKeyName(), target);
+        StringValue.writeString(record.getPrimaryKeyValue(), target);
+        StringValue.writeString(record.getBinlogFile(), target);
+        target.writeLong(record.getBinlogPosition());
+        if (record.hasVersion()) {
+            target.writeLong(record.getVersion());
+        }
+        if (record.hasSourceTimestamp()) {
+            target.writeLong(record.getSourceTimestamp());
+        }
+        if (record.getIndex() != null) {
+            StringValue.writeString(record.getIndex(), target);
+        }
+        if (record.getRouting() != null) {
+            StringValue.writeString(record.getRouting(), target);
+        }
+        if (record.getDocument() != null) {
+            target.writeInt(record.getDocument().length);
+            target.write(record.getDocument());
+        }
+        if (record.getData() != null) {
+            writeMap(record.getData(), target);
+        }
+    }
+
+    @Override
+    public ChangedData deserialize(DataInputView source) throws IOException {
+        int flags = source.readByte();
+        ChangedData record = new ChangedData();
+        record.setOperation(readDictionary(OPERATIONS, source));
+        record.setDatabase(readDictionary(DATABASES, source));
+        record.setTable(readDictionary(TABLES, source));
+        record.setPrimaryKeyName(readDictionary(PRIMARY_KEYS, source));
+        record.setPrimaryKeyValue(StringValue.readString(source));
+        record.setBinlogFile(StringValue.readString(source));
+        record.setBinlogPosition(source.readLong());
+        if ((flags & FLAG_VERSION) != 0) {
+            record.setVersion(source.readLong());
+        }
+        if ((flags & FLAG_SOURCE_TIMESTAMP) != 0) {
+            record.setSourceTimestamp(source.readLong());
+        }
+        if ((flags & FLAG_INDEX) != 0) {
+            record.setIndex(StringValue.readString(source));
+        }
+        if ((flags & FLAG_ROUTING) != 0) {
+            record.setRouting(StringValue.readString(source));
+        }
+        if ((flags & FLAG_DOCUMENT) != 0) {
+            byte[] document = new byte[source.readInt()];
+            source.readFully(document);
+            record.setDocument(document);
+        }
+        if ((flags & FLAG_DATA) != 0) {
+            record.setData(readMap(source));
+        }
+        record.setPartialUpdate((flags & FLAG_PARTIAL_UPDATE) != 0);
+        return record;
+    }
+
+    @Override
+    public ChangedData deserialize(ChangedData reuse, DataInputView source) throws IOException {
+        return deserialize(source);
+    }
+
+    @Override
+    public void copy(DataInputView source, DataOutputView target) throws IOException {
+        serialize(deserialize(source), target);
+    }
+
+    /**
+     * 字典中的值写一个字节的编号（从 1 开始），否则写 0 后跟字符串，null 写 -1
+     */
+    private static void writeDictionary(List<String> dictionary, String value, DataOutputView target) throws IOException {
+        if (value == null) {
+            target.writeByte(DICT_NULL);
+            return;
+        }
+        int index = dictionary.indexOf(value);
+        if (index >= 0) {
+            target.writeByte(index + 1);
+        } else {
+            target.writeByte(DICT_INLINE);
+            StringValue.writeString(value, target);
+        }
+    }
+
+    private static String readDictionary(List<String> dictionary, DataInputView source) throws IOException {
+        byte id = source.readByte();
+        if (id == DICT_NULL) {
+            return null;
+        }
+        return id == DICT_INLINE ? StringValue.readString(source) : dictionary.get(id - 1);
+    }
+
+    /**
+     * 列值 Map 的编码，sink 状态中的文档也使用同样的编码
+     */
+    @SuppressWarnings("unchecked")
+    static void writeMap(Map<?, ?> map, DataOutputView target) throws IOException {
+        target.writeInt(map.size());
+        for (Map.Entry<String, Object> entry : ((Map<String, Object>) map).entrySet()) {
+            StringValue.writeString(entry.getKey(), target);
+            writeValue(entry.getValue(), target);
+        }
+    }
+
+    static Map<String, Object> readMap(DataInputView source) throws IOException {
+        int size = source.readInt();
+        Map<String, Object> map = HashMap.newHashMap(size);
+        for (int i = 0; i < size; i++) {
+            String key = StringValue.readString(source);
+            map.put(key, readValue(source));
+        }
+        return map;
+    }
+
+    private static void writeValue(Object value, DataOutputView target) throws IOException {
+        if (value == null) {
+            target.writeByte(TYPE_NULL);
+        } else if (value instanceof String text) {
+            target.writeByte(TYPE_STRING);
+            StringValue.writeString(text, target);
+        } else if (value instanceof Long number) {
+            target.writeByte(TYPE_LONG);
+            target.writeLong(number);
+        } else if (value instanceof Integer number) {
+            target.writeByte(TYPE_INT);
+            target.writeInt(number);
+        } else if (value instanceof Short number) {
+            target.writeByte(TYPE_SHORT);
+            target.writeShort(number);
+        } else if (value instanceof Byte number) {
+            target.writeByte(TYPE_BYTE);
+            target.writeByte(number);
+        } else if (value instanceof Boolean bool) {
+            target.writeByte(TYPE_BOOLEAN);
+            target.writeBoolean(bool);
+        } else if (value instanceof Double number) {
+            target.writeByte(TYPE_DOUBLE);
+            target.writeDouble(number);
+        } else if (value instanceof Float number) {
+            target.writeByte(TYPE_FLOAT);
+            target.writeFloat(number);
+        } else if (value instanceof BigDecimal decimal) {
+            target.writeByte(TYPE_DECIMAL);
+            target.writeInt(decimal.scale());
+            writeBytes(decimal.unscaledValue().toByteArray(), target);
+        } else if (value instanceof byte[] bytes) {
+            target.writeByte(TYPE_BYTES);
+            writeBytes(bytes, target);
+        } else if (value instanceof ByteBuffer byteBuffer) {
+            byte[] bytes = new byte[byteBuffer.remaining()];
+            byteBuffer.duplicate().get(bytes);
+            target.writeByte(TYPE_BYTES);
+            writeBytes(bytes, target);
+        } else if (value instanceof Date date) {
+            target.writeByte(TYPE_DATE);
+            target.writeLong(date.getTime());
+        } else if (value instanceof Map<?, ?> map) {
+            // 宽表文档中嵌套的对象，如订单的收货地址
+            target.writeByte(TYPE_MAP);
+            writeMap(map, target);
+        } else if (value instanceof List<?> list) {
+            // 宽表文档中嵌套的数组，如订单项列表
+            target.writeByte(TYPE_LIST);
+            target.writeInt(list.size());
+            for (Object element : list) {
+                writeValue(element, target);
+            }
+        } else {
+            throw new IOException("Unsupported column value type: " + value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(DataInputView source) throws IOException {
+        byte type = source.readByte();
+        return switch (type) {
+            case TYPE_NULL -> null;
+            case TYPE_STRING -> StringValue.readString(source);
+            case TYPE_LONG -> source.readLong();
+            case TYPE_INT -> source.readInt();
+            case TYPE_SHORT -> source.readShort();
+            case TYPE_BYTE -> source.readByte();
+            case TYPE_BOOLEAN -> source.readBoolean();
+            case TYPE_DOUBLE -> source.readDouble();
+            case TYPE_FLOAT -> source.readFloat();
+            case TYPE_DECIMAL -> {
+                int scale = source.readInt();
+                yield new BigDecimal(new BigInteger(readBytes(source)), scale);
+            }
+            case TYPE_BYTES -> readBytes(source);
+            case TYPE_DATE -> new Date(source.readLong());
+            case TYPE_MAP -> readMap(source);
+            case TYPE_LIST -> {
+                int size = source.readInt();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(source));
+                }
+                yield list;
+            }
+            default -> throw new IOException("Unknown column value type tag: " + type);
+        };
+    }
+
+    private static void writeBytes(byte[] bytes, DataOutputView target) throws IOException {
+        target.writeInt(bytes.length);
+        target.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputView source) throws IOException {
+        byte[] bytes = new byte[source.readInt()];
+        source.readFully(bytes);
+        return bytes;
+    }
+
+    @Override
+    public TypeSerializerSnapshot<ChangedData> snapshotConfiguration() {
+        return new ChangedDataSerializerSnapshot();
+    }
+
+    /**
+     * 序列化器没有配置项，快照只用于恢复时找回同一个单例
+     */
+    public static final class ChangedDataSerializerSnapshot extends SimpleTypeSerializerSnapshot<ChangedData> {
+        public ChangedDataSerializerSnapshot() {
+            super(() -> INSTANCE);
+        }
+    }
+}
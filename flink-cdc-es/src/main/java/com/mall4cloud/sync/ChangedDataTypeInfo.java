@@ -0,0 +1,79 @@
+package com.mall4cloud.sync;
+
+import org.apache.flink.api.common.ExecutionConfig;
+import org.apache.flink.api.common.serialization.SerializerConfig;
+import org.apache.flink.api.common.typeinfo.TypeInformation;
+import org.apache.flink.api.common.typeutils.TypeSerializer;
+
+import java.io.Serial;
+
+/**
+ * ChangedData 的类型信息，让 Flink 在网络传输和状态中使用 {@link ChangedDataSerializer} 而不是回退到 Kryo
+ */
+public class ChangedDataTypeInfo extends TypeInformation<ChangedData> {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public static final ChangedDataTypeInfo INSTANCE = new ChangedDataTypeInfo();
+
+    @Override
+    public boolean isBasicType() {
+        return false;
+    }
+
+    @Override
+    public boolean isTupleType() {
+        return false;
+    }
+
+    @Override
+    public int getArity() {
+        return 1;
+    }
+
+    @Override
+    public int getTotalFields() {
+        return 1;
+    }
+
+    @Override
+    public Class<ChangedData> getTypeClass() {
+        return ChangedData.class;
+    }
+
+    @Override
+    public boolean isKeyType() {
+        return false;
+    }
+
+    @Override
+    public TypeSerializer<ChangedData> createSerializer(SerializerConfig config) {
+        return ChangedDataSerializer.INSTANCE;
+    }
+
+    @Override
+    @Deprecated
+    public TypeSerializer<ChangedData> createSerializer(ExecutionConfig config) {
+        return ChangedDataSerializer.INSTANCE;
+    }
+
+    @Override
+    public String toString() {
+        return "ChangedDataTypeInfo";
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof ChangedDataTypeInfo;
+    }
+
+    @Override
+    public int hashCode() {
+        return ChangedDataTypeInfo.class.hashCode();
+    }
+
+    @Override
+    public boolean canEqual(Object obj) {
+        return obj instanceof ChangedDataTypeInfo;
+    }
+}
@@ -0,0 +1,59 @@
+package com.mall4cloud.sync;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 死信输出：Elasticsearch 永久拒绝（如 mapping 冲突）的文档不会被丢弃，
+ * 而是以一行 JSON 的形式写入独立的日志文件（见 log4j.properties 中的 deadLetter appender，按天滚动、不删除旧文件），
+ * 记录中带有路由与外部版本号，修复 mapping 后可据此原样重放
+ */
+public class DeadLetterOutput {
+    private static final Logger LOG = LoggerFactory.getLogger(DeadLetterOutput.class);
+    private static final Logger DEAD_LETTER_LOG = LoggerFactory.getLogger("com.mall4cloud.sync.DeadLetter");
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private DeadLetterOutput() {
+    }
+
+    /**
+     * 记录一条被拒绝的 bulk 操作
+     *
+     * @param operation  操作类型，如 index、delete
+     * @param index      目标索引
+     * @param id         文档 ID
+     * @param routing    文档路由，没有时为 null
+     * @param version    外部版本号，没有时为 null
+     * @param status     bulk 响应条目的 HTTP 状态码
+     * @param errorType  Elasticsearch 返回的错误类型
+     * @param reason     Elasticsearch 返回的错误原因
+     * @param document   文档内容（Map 或 JSON 字节），删除操作为 null
+     */
+    public static void write(String operation, String index, String id, String routing, Long version, int status,
+                             String errorType, String reason, Object document) {
+        ObjectNode node = OBJECT_MAPPER.createObjectNode();
+        node.put("timestamp", System.currentTimeMillis());
+        node.put("operation", operation);
+        node.put("index", index);
+        node.put("id", id);
+        node.put("routing", routing);
+        node.put("version", version);
+        node.put("status", status);
+        node.put("errorType", errorType);
+        node.put("reason", reason);
+        try {
+            node.set("document", document instanceof byte[] bytes
+                    ? OBJECT_MAPPER.readTree(bytes)
+                    : OBJECT_MAPPER.valueToTree(document));
+            DEAD_LETTER_LOG.error(OBJECT_MAPPER.writeValueAsString(node));
+        } catch (Exception e) {
+            // 文档序列化失败时至少保留定位信息
+            node.remove("document");
+            DEAD_LETTER_LOG.error(node.toString());
+            LOG.error("Failed to serialize dead letter for document {} in index {}", id, index, e);
+        }
+    }
+}
@@ -1,26 +1,62 @@
 package com.mall4cloud.sync;
 
 import org.apache.flink.api.connector.sink2.Sink;
-import org.apache.flink.api.connector.sink2.SinkWriter;
+import org.apache.flink.api.connector.sink2.StatefulSinkWriter;
+import org.apache.flink.api.connector.sink2.SupportsWriterState;
+import org.apache.flink.api.connector.sink2.WriterInitContext;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.core.io.SimpleVersionedSerializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.Properties;
+import java.io.Serial;
+import java.util.Collection;
 
-public class ElasticsearchSink implements Sink<ChangedData> {
+public class ElasticsearchSink implements Sink<ChangedData>, SupportsWriterState<ChangedData, ElasticsearchWriterState> {
     private static final Logger LOG = LoggerFactory.getLogger(ElasticsearchSink.class);
 
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    // 连接与 bulk 参数，随 sink 一起序列化到 TaskManager
+    private final Configuration config;
+
     public ElasticsearchSink() {
-        this(new Properties());
+        this(new Configuration());
     }
 
-    public ElasticsearchSink(Properties properties) {
+    public ElasticsearchSink(Configuration config) {
+        this.config = config;
     }
 
     @Override
-    public SinkWriter<ChangedData> createWriter(InitContext context) throws IOException {
+    public StatefulSinkWriter<ChangedData, ElasticsearchWriterState> createWriter(WriterInitContext context)
+            throws IOException {
         LOG.info("Creating ElasticsearchSinkWriter");
-        return new ElasticsearchSinkWriter();
+        return new ElasticsearchSinkWriter(context.getProcessingTimeService(), config, context.metricGroup(),
+                context.getTaskInfo());
+    }
+
+    /**
+     * Flink 1.20 中仍为抽象方法，运行时只调用 createWriter(WriterInitContext)
+     */
+    @Deprecated
+    @Override
+    public StatefulSinkWriter<ChangedData, ElasticsearchWriterState> createWriter(InitContext context) {
+        throw new UnsupportedOperationException("Use createWriter(WriterInitContext) instead");
+    }
+
+    @Override
+    public StatefulSinkWriter<ChangedData, ElasticsearchWriterState> restoreWriter(
+            WriterInitContext context, Collection<ElasticsearchWriterState> recoveredState) throws IOException {
+        LOG.info("Restoring ElasticsearchSinkWriter from {} writer states", recoveredState.size());
+        return new ElasticsearchSinkWriter(context.getProcessingTimeService(), config, context.metricGroup(),
+                context.getTaskInfo(), recoveredState);
+    }
+
+    @Override
+    public SimpleVersionedSerializer<ElasticsearchWriterState> getWriterStateSerializer() {
+        return ElasticsearchWriterStateSerializer.INSTANCE;
     }
 }
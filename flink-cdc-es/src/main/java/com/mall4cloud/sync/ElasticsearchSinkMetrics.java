@@ -0,0 +1,187 @@
+package com.mall4cloud.sync;
+
+import org.apache.flink.metrics.Counter;
+import org.apache.flink.metrics.Gauge;
+import org.apache.flink.metrics.Histogram;
+import org.apache.flink.metrics.MeterView;
+import org.apache.flink.metrics.MetricGroup;
+import org.apache.flink.metrics.ThreadSafeSimpleCounter;
+import org.apache.flink.metrics.groups.SinkWriterMetricGroup;
+import org.apache.flink.runtime.metrics.DescriptiveStatisticsHistogram;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Elasticsearch sink 的指标，注册在 sink writer 的指标组下，可在 Web UI 中查看：
+ * <ul>
+ *     <li>numRecordsSend / numBytesSend / numRecordsSendErrors / currentSendTime：Flink 连接器的标准指标，
+ *     分别为已确认写入的文档数、发送的 bulk 请求字节数（含重试，开启压缩时为压缩后的实际字节数，否则为估算值）、
+ *     写入死信输出的文档数与最近一次 bulk 请求的耗时，
+ *     以及对应的 numRecordsSendPerSecond / numBytesSendPerSecond 速率</li>
+ *     <li>bulk.latencyMs / bulk.tookMs / bulk.actions：每次 bulk 请求从发出到收到响应的耗时、
+ *     Elasticsearch 返回的 took 与请求包含的操作数</li>
+ *     <li>bulk.requests / bulk.failedRequests / bulk.retriedRequests / bulk.retriedItems / bulk.staleItems：
+ *     请求数、整体失败的请求数、重试的请求数与重新提交的条目数、因版本冲突跳过的旧变更数</li>
+ *     <li>bulk.status.&lt;状态码&gt;.failedItems：按响应状态码统计失败的条目数，如 429、400</li>
+ *     <li>bulk.uncompressedBytes / bulk.compressedBytes：开启压缩时请求体压缩前后的字节数，两者之比即压缩率</li>
+ *     <li>bulk.actionsLimit / bulk.inFlightLimit：当前每批操作数与进行中请求数的上限，开启自适应时随响应变化</li>
+ *     <li>buffer.actions / buffer.bytes / buffer.inFlightRequests / buffer.inFlightOperations：缓冲区中等待发送的操作数与估算字节数、
+ *     进行中的请求数与其中尚未确认的操作数，持续处于上限说明 Elasticsearch 写入跟不上</li>
+ *     <li>table.&lt;表名&gt;.latencyMs：变更在 MySQL 中提交到 bulk 响应确认写入之间的毫秒数，按表统计分位数（p50/p99/p999 等）</li>
+ * </ul>
+ * 同步延迟只统计带提交时间的增量变更，快照读取的数据不计入。binlog 事件头的时间戳精度为秒，因此延迟的误差在一秒以内。
+ * bulk 请求在处理线程中发出，响应与重试在客户端的回调线程与重试线程中处理，指标会被多个线程同时更新：
+ * 自己注册的计数器使用 ThreadSafeSimpleCounter；numRecordsSend 等标准计数器由 Flink 创建，是非线程安全的 SimpleCounter，
+ * 对它们的更新加锁；直方图（DescriptiveStatisticsHistogram）本身是线程安全的
+ */
+class ElasticsearchSinkMetrics {
+    private final MetricGroup group;
+    private final MetricGroup bulkGroup;
+    private final int histogramWindowSize;
+
+    // 由 SinkWriterMetricGroup 创建的标准计数器不是线程安全的，更新时对 standardCountersLock 加锁
+    private final Object standardCountersLock = new Object();
+    private final Counter recordsSend;
+    private final Counter bytesSend;
+    private final Counter recordsSendErrors;
+    private final Counter requests;
+    private final Counter failedRequests;
+    private final Counter retriedRequests;
+    private final Counter retriedItems;
+    private final Counter staleItems;
+    private final Counter uncompressedBytes;
+    private final Counter compressedBytes;
+    private final Histogram bulkLatency;
+    private final Histogram bulkTook;
+    private final Histogram bulkActions;
+    private volatile long lastSendTimeMs;
+    // 响应状态码 -> 失败条目数，遇到新的状态码时才注册
+    private final Map<Integer, Counter> failedItemsByStatus = new ConcurrentHashMap<>();
+    // 表名 -> 延迟直方图，遇到新表时才注册
+    private final Map<String, Histogram> latencyByTable = new ConcurrentHashMap<>();
+
+    ElasticsearchSinkMetrics(SinkWriterMetricGroup group, int histogramWindowSize) {
+        this.group = group;
+        this.histogramWindowSize = histogramWindowSize;
+        this.recordsSend = group.getNumRecordsSendCounter();
+        this.bytesSend = group.getNumBytesSendCounter();
+        this.recordsSendErrors = group.getNumRecordsSendErrorsCounter();
+        group.setCurrentSendTimeGauge(() -> lastSendTimeMs);
+        group.meter("numRecordsSendPerSecond", new MeterView(recordsSend));
+        group.meter("numBytesSendPerSecond", new MeterView(bytesSend));
+
+        this.bulkGroup = group.addGroup("bulk");
+        this.requests = bulkGroup.counter("requests", new ThreadSafeSimpleCounter());
+        this.failedRequests = bulkGroup.counter("failedRequests", new ThreadSafeSimpleCounter());
+        this.retriedRequests = bulkGroup.counter("retriedRequests", new ThreadSafeSimpleCounter());
+        this.retriedItems = bulkGroup.counter("retriedItems", new ThreadSafeSimpleCounter());
+        this.staleItems = bulkGroup.counter("staleItems", new ThreadSafeSimpleCounter());
+        this.uncompressedBytes = bulkGroup.counter("uncompressedBytes", new ThreadSafeSimpleCounter());
+        this.compressedBytes = bulkGroup.counter("compressedBytes", new ThreadSafeSimpleCounter());
+        this.bulkLatency = bulkGroup.histogram("latencyMs", new DescriptiveStatisticsHistogram(histogramWindowSize));
+        this.bulkTook = bulkGroup.histogram("tookMs", new DescriptiveStatisticsHistogram(histogramWindowSize));
+        this.bulkActions = bulkGroup.histogram("actions", new DescriptiveStatisticsHistogram(histogramWindowSize));
+    }
+
+    /**
+     * 注册缓冲区与进行中请求数的 gauge，值由 bulk writer 提供
+     */
+    void registerBufferGauges(IntSupplier actions, LongSupplier bytes, IntSupplier inFlightRequests,
+                              IntSupplier inFlightOperations) {
+        MetricGroup buffer = group.addGroup("buffer");
+        buffer.gauge("actions", (Gauge<Integer>) actions::getAsInt);
+        buffer.gauge("bytes", (Gauge<Long>) bytes::getAsLong);
+        buffer.gauge("inFlightRequests", (Gauge<Integer>) inFlightRequests::getAsInt);
+        buffer.gauge("inFlightOperations", (Gauge<Integer>) inFlightOperations::getAsInt);
+    }
+
+    /**
+     * 注册当前每批操作数与进行中请求数的上限，开启自适应时随响应变化
+     */
+    void registerSizingGauges(IntSupplier actionsLimit, IntSupplier inFlightLimit) {
+        bulkGroup.gauge("actionsLimit", (Gauge<Integer>) actionsLimit::getAsInt);
+        bulkGroup.gauge("inFlightLimit", (Gauge<Integer>) inFlightLimit::getAsInt);
+    }
+
+    /**
+     * 发出一次 bulk 请求（包括重试）
+     */
+    void recordRequest(int actions, long bytes) {
+        requests.inc();
+        synchronized (standardCountersLock) {
+            bytesSend.inc(bytes);
+        }
+        bulkActions.update(actions);
+    }
+
+    /**
+     * 收到 bulk 响应，latencyMs 为客户端观察到的耗时，tookMs 为 Elasticsearch 返回的处理耗时
+     */
+    void recordResponse(long latencyMs, long tookMs, int acknowledged) {
+        lastSendTimeMs = latencyMs;
+        bulkLatency.update(latencyMs);
+        bulkTook.update(tookMs);
+        synchronized (standardCountersLock) {
+            recordsSend.inc(acknowledged);
+        }
+    }
+
+    /**
+     * 整个 bulk 请求失败，如连接超时
+     */
+    void recordFailedRequest(long latencyMs) {
+        lastSendTimeMs = latencyMs;
+        bulkLatency.update(latencyMs);
+        failedRequests.inc();
+    }
+
+    /**
+     * 开启压缩时每个请求体压缩前后的字节数
+     */
+    void recordCompression(long uncompressed, long compressed) {
+        uncompressedBytes.inc(uncompressed);
+        compressedBytes.inc(compressed);
+    }
+
+    void recordRetry(int items) {
+        retriedRequests.inc();
+        retriedItems.inc(items);
+    }
+
+    void recordFailedItem(int status) {
+        failedItemsByStatus.computeIfAbsent(status,
+                s -> bulkGroup.addGroup("status", String.valueOf(s)).counter("failedItems", new ThreadSafeSimpleCounter())).inc();
+    }
+
+    void recordStaleItems(int items) {
+        staleItems.inc(items);
+    }
+
+    /**
+     * 写入死信输出或放弃重试的文档
+     */
+    void recordSendErrors(int items) {
+        synchronized (standardCountersLock) {
+            recordsSendErrors.inc(items);
+        }
+    }
+
+    /**
+     * 记录一条已被 Elasticsearch 确认的变更
+     */
+    void recordLatency(String table, long sourceTimestamp, long acknowledgedAt) {
+        if (sourceTimestamp <= 0) {
+            return;
+        }
+        latencyByTable.computeIfAbsent(table, this::registerLatencyHistogram)
+                .update(Math.max(0, acknowledgedAt - sourceTimestamp));
+    }
+
+    private Histogram registerLatencyHistogram(String table) {
+        return group.addGroup("table", table)
+                .histogram("latencyMs", new DescriptiveStatisticsHistogram(histogramWindowSize));
+    }
+}
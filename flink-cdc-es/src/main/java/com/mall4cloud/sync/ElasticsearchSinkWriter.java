@@ -1,74 +1,160 @@
 package com.mall4cloud.sync;
 
-import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.VersionType;
 import co.elastic.clients.elasticsearch.core.BulkRequest;
 import co.elastic.clients.elasticsearch.core.BulkResponse;
 import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
 import co.elastic.clients.json.jackson.JacksonJsonpMapper;
 import co.elastic.clients.transport.ElasticsearchTransport;
+import co.elastic.clients.transport.TransportOptions;
 import co.elastic.clients.transport.rest_client.RestClientTransport;
+import co.elastic.clients.util.BinaryData;
+import co.elastic.clients.util.ContentType;
+import org.apache.flink.api.common.TaskInfo;
+import org.apache.flink.api.common.operators.ProcessingTimeService;
 import org.apache.flink.api.common.serialization.BulkWriter;
-import org.apache.flink.api.connector.sink2.SinkWriter;
+import org.apache.flink.api.connector.sink2.StatefulSinkWriter;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.metrics.groups.SinkWriterMetricGroup;
 import org.apache.http.HttpHost;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
 import org.apache.http.conn.ssl.NoopHostnameVerifier;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
 import org.apache.http.ssl.SSLContexts;
 import org.elasticsearch.client.*;
+import org.elasticsearch.client.sniff.ElasticsearchNodesSniffer;
+import org.elasticsearch.client.sniff.SniffOnFailureListener;
+import org.elasticsearch.client.sniff.Sniffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.net.ssl.SSLContext;
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
-public class ElasticsearchSinkWriter implements SinkWriter<ChangedData> {
+/**
+ * 写入 Elasticsearch 的 sink writer。checkpoint 时不等待缓冲区写完，而是把尚未被确认的 bulk 操作写入状态，
+ * 恢复时重新发送，不必从 binlog 重新读取。
+ * 修改并行度后状态按轮询重新分配，与按文档分区后的新数据不在同一个 subtask，不带版本号的操作无法再与新变更排序，
+ * 此时拒绝恢复，见 {@link #checkRestoredState}
+ */
+public class ElasticsearchSinkWriter implements StatefulSinkWriter<ChangedData, ElasticsearchWriterState> {
     private static final Logger LOG = LoggerFactory.getLogger(ElasticsearchSinkWriter.class);
 
-    private final ElasticsearchClient client;
-    private final BulkWriter<ChangedData> bulkWriter;
+    private final SharedElasticsearchTransport.Lease transportLease;
+    private final ElasticsearchAsyncClient asyncClient;
+    private final ElasticSearchBulkWriter bulkWriter;
+    private final ProcessingTimeService processingTimeService;
+    private final boolean flushOnCheckpoint;
+    private final long flushTimeoutMs;
+    private final int subtaskIndex;
+    private final int parallelism;
+    private volatile boolean closed;
     private static final int MAX_RETRY_COUNT = 5;
     private static final Duration RETRY_BACKOFF = Duration.ofSeconds(5);
 
-    public ElasticsearchSinkWriter() {
-        // 创建 Elasticsearch 客户端
-        this.client = createClient();
-        this.bulkWriter = createBulkWriter();
+    public ElasticsearchSinkWriter(ProcessingTimeService processingTimeService, Configuration config,
+                                   SinkWriterMetricGroup metricGroup, TaskInfo taskInfo) throws IOException {
+        this(processingTimeService, config, metricGroup, taskInfo, List.of());
+    }
+
+    public ElasticsearchSinkWriter(ProcessingTimeService processingTimeService, Configuration config,
+                                   SinkWriterMetricGroup metricGroup, TaskInfo taskInfo,
+                                   Collection<ElasticsearchWriterState> recoveredState) throws IOException {
+        this.processingTimeService = processingTimeService;
+        this.subtaskIndex = taskInfo.getIndexOfThisSubtask();
+        this.parallelism = taskInfo.getNumberOfParallelSubtasks();
+        checkRestoredState(recoveredState, config.get(SyncOptions.SINK_KEY_BY_DOCUMENT));
+        this.flushOnCheckpoint = config.get(SyncOptions.SINK_FLUSH_ON_CHECKPOINT);
+        this.flushTimeoutMs = config.get(SyncOptions.SINK_FLUSH_TIMEOUT).toMillis();
+        // 同一个 TaskManager 中的 writer 共用 transport（连接池），只有第一个 writer 需要建立连接
+        this.transportLease = SharedElasticsearchTransport.acquire(config);
+        this.asyncClient = new ElasticsearchAsyncClient(transportLease.transport());
+        try {
+            this.bulkWriter = createBulkWriter(config, new ElasticsearchSinkMetrics(metricGroup,
+                    config.get(SyncOptions.SINK_METRICS_LATENCY_WINDOW_SIZE)));
+            for (ElasticsearchWriterState state : recoveredState) {
+                bulkWriter.restore(state.operations());
+            }
+        } catch (IOException | RuntimeException e) {
+            transportLease.close();
+            throw e;
+        }
+        registerFlushTimer();
         LOG.info("ElasticsearchSinkWriter initialized successfully");
     }
 
-    private ElasticsearchClient createClient() {
-        // 从环境变量或配置文件中获取连接信息，如果没有则使用默认值
-        String serverUrl = System.getProperty("es.url", "https://localhost:9200");
-        String username = System.getProperty("es.username", "elastic");
-        String password = System.getProperty("es.password", "elastic");
-        int connectionTimeout = Integer.parseInt(System.getProperty("es.connectionTimeout", "5000"));
-        int socketTimeout = Integer.parseInt(System.getProperty("es.socketTimeout", "60000"));
+    /**
+     * 创建到 Elasticsearch 的 transport 并测试连接，重建索引时作业提交端也复用同样的连接配置。
+     * 请求在 es.hosts（或节点发现得到的节点）之间轮询，失败的节点暂时跳过；开启节点发现时，关闭 transport 会一并停止发现
+     */
+    static ElasticsearchTransport createTransport(Configuration config) {
+        // 连接信息来自作业配置，未配置时使用 SyncOptions 中的默认值
+        List<String> hosts = config.get(SyncOptions.ES_HOSTS);
+        String username = config.get(SyncOptions.ES_USERNAME);
+        String password = config.get(SyncOptions.ES_PASSWORD);
+        int connectionTimeout = (int) config.get(SyncOptions.ES_CONNECTION_TIMEOUT).toMillis();
+        int socketTimeout = (int) config.get(SyncOptions.ES_SOCKET_TIMEOUT).toMillis();
+        boolean sniff = config.get(SyncOptions.ES_SNIFF_ENABLED);
+        int maxConnPerRoute = config.getOptional(SyncOptions.ES_MAX_CONNECTIONS_PER_ROUTE)
+                .orElse(defaultMaxConnPerRoute(config));
+        int maxConnTotal = config.getOptional(SyncOptions.ES_MAX_CONNECTIONS_TOTAL)
+                .orElse(defaultMaxConnTotal(maxConnPerRoute, hosts.size(), sniff));
 
-        LOG.info("Connecting to Elasticsearch at {} with user {}", serverUrl, username);
+        LOG.info("Connecting to Elasticsearch at {} with user {}, sniffing: {}, node selector: {}, "
+                        + "max connections per route: {}, total: {}",
+                hosts, username, sniff, config.get(SyncOptions.ES_NODE_SELECTOR), maxConnPerRoute, maxConnTotal);
 
         BasicCredentialsProvider credentialsProvider = new BasicCredentialsProvider();
         credentialsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(username, password));
 
+        RestClient restClient = null;
         try {
             SSLContext sslContext = SSLContexts.custom()
                     .loadTrustMaterial(null, (chain, authType) -> true)
                     .build();
-            
-            RestClientBuilder restClientBuilder = RestClient.builder(HttpHost.create(serverUrl))
+
+            // 打乱节点顺序，避免各个 subtask 的第一批请求都发往同一个节点
+            List<HttpHost> httpHosts = new ArrayList<>(hosts.size());
+            for (String host : hosts) {
+                httpHosts.add(HttpHost.create(host));
+            }
+            Collections.shuffle(httpHosts);
+
+            SniffOnFailureListener sniffOnFailureListener = sniff ? new SniffOnFailureListener() : null;
+            RestClientBuilder restClientBuilder = RestClient.builder(httpHosts.toArray(new HttpHost[0]))
+                .setNodeSelector(nodeSelector(config.get(SyncOptions.ES_NODE_SELECTOR)))
                 .setHttpClientConfigCallback(httpClientBuilder -> {
                     httpClientBuilder.setDefaultCredentialsProvider(credentialsProvider);
                     httpClientBuilder.setSSLContext(sslContext);
                     httpClientBuilder.setSSLHostnameVerifier(NoopHostnameVerifier.INSTANCE);
-                    httpClientBuilder.setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE);
-                    httpClientBuilder.setMaxConnTotal(50);
-                    httpClientBuilder.setMaxConnPerRoute(10);
+                    httpClientBuilder.setKeepAliveStrategy(
+                            keepAliveStrategy(config.getOptional(SyncOptions.ES_CONNECTION_KEEP_ALIVE).orElse(null)));
+                    httpClientBuilder.setMaxConnTotal(maxConnTotal);
+                    httpClientBuilder.setMaxConnPerRoute(maxConnPerRoute);
                     return customizeHttpClient(httpClientBuilder);
                 })
                 .setRequestConfigCallback(requestConfigBuilder -> {
@@ -76,25 +162,108 @@ public class ElasticsearchSinkWriter implements SinkWriter<ChangedData> {
                     requestConfigBuilder.setSocketTimeout(socketTimeout);
                     return requestConfigBuilder;
                 });
+            if (sniffOnFailureListener != null) {
+                restClientBuilder.setFailureListener(sniffOnFailureListener);
+            }
+
+            restClient = restClientBuilder.build();
 
-            RestClient restClient = restClientBuilder.build();
-            
             // 测试连接
             testConnection(restClient);
-            
-            ElasticsearchTransport transport = new RestClientTransport(restClient, new JacksonJsonpMapper());
-            return new ElasticsearchClient(transport);
+
+            if (!sniff) {
+                return new RestClientTransport(restClient, new JacksonJsonpMapper());
+            }
+            Sniffer sniffer = createSniffer(restClient, config, httpHosts.get(0).getSchemeName());
+            sniffOnFailureListener.setSniffer(sniffer);
+            return new RestClientTransport(restClient, new JacksonJsonpMapper()) {
+                @Override
+                public void close() throws IOException {
+                    // 先停止发现节点，再关闭客户端
+                    sniffer.close();
+                    super.close();
+                }
+            };
         } catch (Exception e) {
             LOG.error("Failed to create Elasticsearch client", e);
+            // 连接测试失败时客户端已启动了 IO 线程与连接池，需要关闭，否则每次重试都会泄漏一个客户端
+            if (restClient != null) {
+                try {
+                    restClient.close();
+                } catch (IOException closeException) {
+                    e.addSuppressed(closeException);
+                }
+            }
             throw new RuntimeException("Failed to create Elasticsearch client", e);
         }
     }
-    
-    private HttpAsyncClientBuilder customizeHttpClient(HttpAsyncClientBuilder httpClientBuilder) {
+
+    /**
+     * 同一个 TaskManager 中的 sink subtask 共用连接池，最多时全部 subtask 都在同一个 JVM 中，
+     * 每个 subtask 最多有 es.bulk.max-in-flight-requests 个请求，另外留一个连接给节点发现等请求。
+     * 这只是上限，连接在需要时才建立
+     */
+    static int defaultMaxConnPerRoute(Configuration config) {
+        return config.get(SyncOptions.SINK_PARALLELISM) * config.get(SyncOptions.BULK_MAX_IN_FLIGHT_REQUESTS) + 1;
+    }
+
+    /**
+     * 轮询时每个节点都可能同时承担全部进行中的请求，连接池要能为每个节点保留这么多长连接，
+     * 否则切换节点时会关闭旧连接、重新握手。节点发现后的节点数事先未知，至少保留 50 个连接
+     */
+    static int defaultMaxConnTotal(int maxConnPerRoute, int hosts, boolean sniff) {
+        int total = maxConnPerRoute * hosts;
+        return sniff ? Math.max(total, 50) : total;
+    }
+
+    /**
+     * 按响应的 Keep-Alive 头决定空闲连接保留多久，配置了 es.connection.keep-alive 时不超过该值
+     */
+    private static ConnectionKeepAliveStrategy keepAliveStrategy(Duration maxKeepAlive) {
+        if (maxKeepAlive == null) {
+            return DefaultConnectionKeepAliveStrategy.INSTANCE;
+        }
+        long maxKeepAliveMs = maxKeepAlive.toMillis();
+        return (response, context) -> {
+            long keepAliveMs = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return keepAliveMs > 0 ? Math.min(keepAliveMs, maxKeepAliveMs) : maxKeepAliveMs;
+        };
+    }
+
+    private static NodeSelector nodeSelector(SyncOptions.NodeSelection selection) {
+        return switch (selection) {
+            case ANY -> NodeSelector.ANY;
+            case SKIP_DEDICATED_MASTERS -> NodeSelector.SKIP_DEDICATED_MASTERS;
+            case DATA -> nodes -> {
+                Iterator<Node> iterator = nodes.iterator();
+                while (iterator.hasNext()) {
+                    Node node = iterator.next();
+                    // 未开启节点发现时节点角色未知，保留这些节点
+                    if (node.getRoles() != null && !node.getRoles().canContainData()) {
+                        iterator.remove();
+                    }
+                }
+            };
+        };
+    }
+
+    private static Sniffer createSniffer(RestClient restClient, Configuration config, String scheme) {
+        ElasticsearchNodesSniffer nodesSniffer = new ElasticsearchNodesSniffer(restClient,
+                ElasticsearchNodesSniffer.DEFAULT_SNIFF_REQUEST_TIMEOUT,
+                "https".equalsIgnoreCase(scheme) ? ElasticsearchNodesSniffer.Scheme.HTTPS
+                        : ElasticsearchNodesSniffer.Scheme.HTTP);
+        return Sniffer.builder(restClient)
+                .setNodesSniffer(nodesSniffer)
+                .setSniffIntervalMillis((int) config.get(SyncOptions.ES_SNIFF_INTERVAL).toMillis())
+                .setSniffAfterFailureDelayMillis((int) config.get(SyncOptions.ES_SNIFF_AFTER_FAILURE_DELAY).toMillis())
+                .build();
+    }
+
+    private static HttpAsyncClientBuilder customizeHttpClient(HttpAsyncClientBuilder httpClientBuilder) {
         return httpClientBuilder;
     }
     
-    private void testConnection(RestClient restClient) {
+    private static void testConnection(RestClient restClient) {
         int retries = 0;
         boolean connected = false;
         Exception lastException = null;
@@ -130,7 +299,7 @@ public class ElasticsearchSinkWriter implements SinkWriter<ChangedData> {
         }
     }
     
-    private void sleepBeforeRetry(int retryCount) {
+    private static void sleepBeforeRetry(int retryCount) {
         try {
             long sleepTime = RETRY_BACKOFF.toMillis() * retryCount;
             LOG.info("Waiting {} ms before retry", sleepTime);
@@ -140,8 +309,74 @@ public class ElasticsearchSinkWriter implements SinkWriter<ChangedData> {
         }
     }
 
-    private BulkWriter<ChangedData> createBulkWriter() {
-        return new ElasticSearchBulkWriter(client);
+    private ElasticSearchBulkWriter createBulkWriter(Configuration config, ElasticsearchSinkMetrics metrics) {
+        return new ElasticSearchBulkWriter(asyncClient, metrics,
+                // async=true 时写入线程只负责攒批，bulk 请求在后台并发执行；false 时每批同步等待响应
+                config.get(SyncOptions.BULK_ASYNC),
+                // 跨可用区部署时网络带宽有限，gzip 压缩后的 bulk 请求体通常只有原来的五分之一左右
+                config.get(SyncOptions.BULK_COMPRESSION),
+                // 每批操作数与进行中的请求数，开启自适应时以配置值为上限按响应调整
+                new AdaptiveBulkController(config.get(SyncOptions.BULK_ADAPTIVE_ENABLED),
+                        config.get(SyncOptions.BULK_ADAPTIVE_MIN_ACTIONS),
+                        config.get(SyncOptions.BULK_MAX_ACTIONS),
+                        config.get(SyncOptions.BULK_MAX_IN_FLIGHT_REQUESTS),
+                        config.get(SyncOptions.BULK_ADAPTIVE_TARGET_LATENCY).toMillis()),
+                config.get(SyncOptions.BULK_MAX_SIZE).getBytes(),
+                config.get(SyncOptions.BULK_FLUSH_INTERVAL).toMillis(),
+                config.get(SyncOptions.BULK_MAX_RETRIES),
+                config.get(SyncOptions.BULK_INITIAL_BACKOFF).toMillis(),
+                config.get(SyncOptions.BULK_MAX_BACKOFF).toMillis(),
+                // 以 binlog 位置作为外部版本号（external_gte），重放或乱序到达的旧变更不会覆盖新文档
+                config.get(SyncOptions.BULK_EXTERNAL_VERSION),
+                // 同一文档在一个刷新窗口内的多次变更只保留最后一次
+                config.get(SyncOptions.BULK_DEDUPLICATE),
+                // 重建模式下写入带版本后缀的新索引，完成后再切换别名
+                config.get(SyncOptions.REBUILD_ENABLED) ? config.get(SyncOptions.REBUILD_INDEX_SUFFIX) : null);
+    }
+
+    /**
+     * 注册下一次定时刷新。回调与 write() 一样运行在任务的 mailbox 线程中，因此无需额外加锁；
+     * 低流量时缓冲区中的数据最多停留一个刷新间隔
+     */
+    private void registerFlushTimer() {
+        long now = processingTimeService.getCurrentProcessingTime();
+        processingTimeService.registerTimer(now + bulkWriter.getMillisUntilNextFlush(), this::onFlushTimer);
+    }
+
+    private void onFlushTimer(long timestamp) throws IOException {
+        if (closed) {
+            return;
+        }
+        bulkWriter.flushIfIntervalElapsed();
+        registerFlushTimer();
+    }
+
+    /**
+     * 按文档分区时，同一文档的新变更只发往一个 subtask，由 InFlightDocuments 在该 subtask 内排序。
+     * 修改并行度后恢复的状态可能落在另一个 subtask 上：带版本号的操作由 external_gte 保证旧变更不覆盖新变更，
+     * 不带版本号的操作（局部更新、订单宽表、快照数据）可能在新变更之后写入而覆盖它，因此拒绝恢复
+     */
+    private void checkRestoredState(Collection<ElasticsearchWriterState> recoveredState, boolean keyByDocument) {
+        for (ElasticsearchWriterState state : recoveredState) {
+            if (state.parallelism() == ElasticsearchWriterState.UNKNOWN) {
+                LOG.warn("Restored Elasticsearch writer state does not record its subtask, "
+                        + "cannot check whether the sink parallelism has changed");
+                continue;
+            }
+            if (!keyByDocument || state.writtenBy(subtaskIndex, parallelism)) {
+                continue;
+            }
+            long unversioned = state.operations().stream().filter(operation -> operation.version() == null).count();
+            if (unversioned > 0) {
+                throw new IllegalStateException(String.format("Cannot restore %d pending Elasticsearch operations "
+                        + "without external version written by sink subtask %d of %d into subtask %d of %d: after "
+                        + "changing the sink parallelism they could overwrite newer changes of the same documents "
+                        + "written by another subtask. Restore with parallelism %d, take a savepoint with "
+                        + "%s=true so that no operations are pending, then change the parallelism",
+                        unversioned, state.subtaskIndex(), state.parallelism(), subtaskIndex, parallelism,
+                        state.parallelism(), SyncOptions.SINK_FLUSH_ON_CHECKPOINT.key()));
+            }
+        }
     }
 
     @Override
@@ -157,182 +392,785 @@ public class ElasticsearchSinkWriter implements SinkWriter<ChangedData> {
 
     @Override
     public void flush(boolean endOfInput) throws IOException, InterruptedException {
+        if (!endOfInput && !flushOnCheckpoint) {
+            // checkpoint 前不等待，未确认的操作由 snapshotState 写入状态
+            bulkWriter.checkAsyncFailure();
+            return;
+        }
         LOG.info("Flushing bulk processor...");
         try {
-            bulkWriter.flush();
+            if (endOfInput) {
+                bulkWriter.flush();
+            } else if (!bulkWriter.flush(flushTimeoutMs)) {
+                // 不再等待，避免阻塞 barrier 导致 checkpoint 超时，未确认的操作由 snapshotState 写入状态
+                LOG.warn("Bulk requests did not complete within {} ms before checkpoint, "
+                        + "{} unacknowledged operations are kept in state", flushTimeoutMs,
+                        bulkWriter.inFlightOperations());
+            }
         } catch (Exception e) {
             LOG.error("Error flushing bulk processor", e);
             throw new IOException("Failed to flush bulk processor", e);
         }
     }
 
+    @Override
+    public List<ElasticsearchWriterState> snapshotState(long checkpointId) throws IOException {
+        List<ElasticSearchBulkWriter.BulkOperation> pending = bulkWriter.pendingOperations();
+        LOG.debug("Checkpoint {} keeps {} pending operations in state", checkpointId, pending.size());
+        return pending.isEmpty() ? List.of()
+                : List.of(new ElasticsearchWriterState(subtaskIndex, parallelism, pending));
+    }
+
     @Override
     public void close() throws Exception {
         LOG.info("Closing Elasticsearch sink writer...");
+        closed = true;
         try {
             if (bulkWriter != null) {
                 bulkWriter.finish();
             }
-            if (client != null) {
-                client.close();
-            }
         } catch (Exception e) {
             LOG.error("Error closing resources", e);
             throw e;
+        } finally {
+            // 共享的 transport 在最后一个 writer 释放后才关闭
+            transportLease.close();
         }
     }
 }
 
 class ElasticSearchBulkWriter implements BulkWriter<ChangedData> {
     private static final Logger LOG = LoggerFactory.getLogger(ElasticSearchBulkWriter.class);
-    private static final int MAX_BULK_ACTIONS = 1000;
-    private static final int MAX_RETRY_COUNT = 3;
-    private static final long RETRY_BACKOFF_MS = 1000;
+    private static final byte[] PARTIAL_UPDATE_PREFIX = "{\"doc\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PARTIAL_UPDATE_SUFFIX = ",\"doc_as_upsert\":true}".getBytes(StandardCharsets.UTF_8);
+    // {"doc":...,"doc_as_upsert":true} 相对文档本身多出的字节数
+    private static final int UPDATE_WRAPPER_SIZE = PARTIAL_UPDATE_PREFIX.length + PARTIAL_UPDATE_SUFFIX.length;
+    // 局部更新在分片上读取、合并、写回之间文档被其它写入修改时，由 Elasticsearch 直接重试的次数
+    private static final int UPDATE_RETRY_ON_CONFLICT = 3;
+    // 等待进行中的请求时输出进度的间隔
+    private static final long WAIT_PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
 
-    private final ElasticsearchClient client;
-    private final List<BulkOperation> operations;
+    private final ElasticsearchAsyncClient client;
+    private final ElasticsearchSinkMetrics metrics;
+    private final boolean async;
+    // 为 null 时不压缩，由客户端直接序列化 BulkRequest
+    private final GzipBulkEncoder gzipEncoder;
+    private final TransportOptions gzipOptions;
+    // 决定每批操作数与进行中的请求数上限，开启 es.bulk.adaptive.enabled 时按响应调整
+    private final AdaptiveBulkController sizing;
+    // 进行中的请求数达到上限时写入线程阻塞，形成反压
+    private final InFlightRequestLimiter inFlightLimiter;
+    // 没有版本号的操作不能与同一文档之前未确认的操作同时进行，见 InFlightDocuments
+    private final InFlightDocuments inFlightDocuments = new InFlightDocuments();
+    // 已提交但尚未被确认的 bulk 请求（包括等待重试的条目），按提交顺序编号，checkpoint 时与缓冲区一起写入状态
+    private final ConcurrentSkipListMap<Long, List<BulkOperation>> inFlightBatches = new ConcurrentSkipListMap<>();
+    private long nextBatchId;
+    // 仅由 Flink 任务线程访问：攒满后整体交给后台请求，并立即换上新的缓冲区
+    private List<BulkOperation> operations;
+    // 去重模式下记录缓冲区中每个文档（索引 + ID）对应的操作下标
+    private final Map<String, Integer> pendingPositions;
+    // 当前缓冲区内操作序列化后的估算字节数，随 addElement 增量累加
+    private long bufferedBytes;
     private long lastFlushTime;
-    private static final long FLUSH_INTERVAL_MS = 10000; // 10秒自动刷新
+    private final long maxBulkSizeBytes;
+    private final long flushIntervalMs;
+    // 重试次数用尽或其它无法恢复的异步错误，在任务线程下一次调用时抛出，使作业失败并从 checkpoint 恢复
+    private final AtomicReference<Throwable> asyncFailure = new AtomicReference<>();
+    private final int maxRetries;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final boolean externalVersion;
+    private final boolean deduplicate;
+    // 不为 null 时写入 表名_后缀 的索引，见 IndexRebuilder
+    private final String indexSuffix;
+    // 按 es.index.name.* 命名、已确认存在并加入了别名的索引
+    private final Set<String> aliasedIndices = new HashSet<>();
 
-    public ElasticSearchBulkWriter(ElasticsearchClient client) {
+    public ElasticSearchBulkWriter(ElasticsearchAsyncClient client, ElasticsearchSinkMetrics metrics,
+                                   boolean async, boolean compression, AdaptiveBulkController sizing,
+                                   long maxBulkSizeBytes, long flushIntervalMs,
+                                   int maxRetries, long initialBackoffMs, long maxBackoffMs,
+                                   boolean externalVersion, boolean deduplicate, String indexSuffix) {
+        if (maxBulkSizeBytes < 1) {
+            throw new IllegalArgumentException("maxBulkSizeBytes must be positive, got " + maxBulkSizeBytes);
+        }
+        if (flushIntervalMs < 1) {
+            throw new IllegalArgumentException("flushIntervalMs must be positive, got " + flushIntervalMs);
+        }
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("maxRetries must not be negative, got " + maxRetries);
+        }
+        if (initialBackoffMs < 1 || maxBackoffMs < initialBackoffMs) {
+            throw new IllegalArgumentException("Invalid retry backoff: initial " + initialBackoffMs
+                    + " ms, max " + maxBackoffMs + " ms");
+        }
         this.client = client;
-        this.operations = new ArrayList<>();
+        this.metrics = metrics;
+        this.async = async;
+        if (compression) {
+            this.gzipEncoder = new GzipBulkEncoder(client._jsonpMapper(), (int) Math.min(maxBulkSizeBytes, 1 << 20));
+            TransportOptions options = client._transportOptions() != null
+                    ? client._transportOptions() : client._transport().options();
+            this.gzipOptions = options.with(o -> o.setHeader("Content-Encoding", GzipBulkEncoder.CONTENT_ENCODING));
+        } else {
+            this.gzipEncoder = null;
+            this.gzipOptions = null;
+        }
+        this.sizing = sizing;
+        this.inFlightLimiter = sizing.limiter();
+        this.maxBulkSizeBytes = maxBulkSizeBytes;
+        this.flushIntervalMs = flushIntervalMs;
+        this.maxRetries = maxRetries;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.externalVersion = externalVersion;
+        this.deduplicate = deduplicate;
+        this.indexSuffix = indexSuffix;
+        this.operations = new ArrayList<>(sizing.actionsLimit());
+        this.pendingPositions = deduplicate ? new HashMap<>(sizing.maxActions() * 2) : null;
         this.lastFlushTime = System.currentTimeMillis();
-        LOG.info("ElasticSearchBulkWriter initialized with batch size: {}", MAX_BULK_ACTIONS);
+        // gauge 在指标线程中读取，允许读到略旧的值
+        metrics.registerBufferGauges(() -> operations.size(), () -> bufferedBytes,
+                inFlightLimiter::inFlight, this::inFlightOperations);
+        metrics.registerSizingGauges(sizing::actionsLimit, inFlightLimiter::limit);
+        LOG.info("ElasticSearchBulkWriter initialized with batch size: {}, max bytes: {}, flush interval: {} ms, "
+                        + "async: {}, compression: {}, max in-flight requests: {}, adaptive: {}, external version: {}, "
+                        + "deduplicate: {}, index suffix: {}",
+                sizing.maxActions(), maxBulkSizeBytes, flushIntervalMs, async, compression,
+                sizing.maxInFlightRequests(), sizing.isEnabled(), externalVersion, deduplicate, indexSuffix);
     }
 
     @Override
     public void addElement(ChangedData element) throws IOException {
-        BulkOperation operation = getBulkOperation(element);
+        checkAsyncFailure();
+        String index = indexSuffix != null ? IndexRebuilder.versionedIndex(element.getTable(), indexSuffix)
+                : element.getIndex() != null ? element.getIndex() : element.getTable();
+        add(getBulkOperation(element, index, externalVersion));
+    }
+
+    /**
+     * 放回上次 checkpoint 时尚未被确认的操作，在写入新数据之前调用。按原来的顺序进入缓冲区，达到阈值时照常刷新
+     */
+    void restore(List<BulkOperation> restored) throws IOException {
+        for (BulkOperation operation : restored) {
+            add(operation);
+        }
+        LOG.info("Restored {} pending operations from checkpoint", restored.size());
+    }
 
-        synchronized (operations) {
+    /**
+     * checkpoint 时尚未被确认的全部操作：进行中的请求在前、缓冲区在后，与发送顺序一致。
+     * 请求在后台完成，读到的可能是已确认的请求，恢复后重复写入是幂等的
+     */
+    List<BulkOperation> pendingOperations() {
+        List<BulkOperation> pending = new ArrayList<>(operations.size());
+        for (List<BulkOperation> batch : inFlightBatches.values()) {
+            pending.addAll(batch);
+        }
+        pending.addAll(operations);
+        return pending;
+    }
+
+    private void add(BulkOperation operation) throws IOException {
+        if (indexSuffix == null && !operation.index.equals(operation.table)
+                && aliasedIndices.add(operation.index)) {
+            ensureAliased(operation.index, operation.table);
+        }
+        if (deduplicate) {
+            bufferDeduplicated(operation);
+        } else {
             operations.add(operation);
-            LOG.debug("Added operation to batch. Current size: {}", operations.size());
+            bufferedBytes += operation.sizeInBytes;
+        }
+        LOG.debug("Added operation to batch. Current size: {}, estimated bytes: {}", operations.size(), bufferedBytes);
 
-            // 如果达到批量处理阈值或者距离上次刷新已经过了指定时间，执行刷新
-            long currentTime = System.currentTimeMillis();
-            if (operations.size() >= MAX_BULK_ACTIONS || (currentTime - lastFlushTime) > FLUSH_INTERVAL_MS) {
-                doFlush();
-                lastFlushTime = currentTime;
+        // 条数或字节数达到阈值时刷新，按时间的刷新由定时器负责
+        if (operations.size() >= sizing.actionsLimit() || bufferedBytes >= maxBulkSizeBytes) {
+            doFlush();
+            lastFlushTime = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 第一次写入按模板命名的索引之前创建该索引并加入以表名命名的别名，否则 bulk 自动创建的索引不在别名中，
+     * 按表名查询不到。索引已存在（其它子任务已创建或由 bulk 自动创建）时只添加别名，两者都是幂等的。
+     * 每个索引在一个子任务中只请求一次，新月份的索引出现时才会阻塞一次写入线程
+     */
+    private void ensureAliased(String index, String alias) throws IOException {
+        try {
+            try {
+                client.indices().create(c -> c.index(index).aliases(alias, a -> a)).get();
+                LOG.info("Created index {} with alias {}", index, alias);
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof ElasticsearchException error)
+                        || !"resource_already_exists_exception".equals(error.error().type())) {
+                    throw e;
+                }
+                client.indices().putAlias(a -> a.index(index).name(alias)).get();
+                LOG.info("Added existing index {} to alias {}", index, alias);
             }
+        } catch (ExecutionException e) {
+            aliasedIndices.remove(index);
+            if (e.getCause() instanceof ElasticsearchException error
+                    && "invalid_alias_name_exception".equals(error.error().type())) {
+                // 启用模板之前写入的、与表名同名的普通索引，需要先迁移，见 README
+                throw new IOException("Cannot add index " + index + " to alias " + alias + ", a concrete index named "
+                        + alias + " already exists; delete it and resync, or remove the index name template", error);
+            }
+            throw new IOException("Failed to create index " + index + " with alias " + alias, e.getCause());
+        } catch (InterruptedException e) {
+            aliasedIndices.remove(index);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while creating index " + index, e);
+        }
+    }
+
+    /**
+     * 同一文档已有待发送的操作时，用新操作原地替换旧操作，否则追加到缓冲区末尾。
+     * 后到的变更覆盖先到的；带版本号时保留版本更高者，版本相同时删除优先。
+     * 局部更新总是追加，完整的 index / delete 则可以覆盖之前的局部更新
+     */
+    private void bufferDeduplicated(BulkOperation operation) {
+        String key = operation.index + '/' + operation.id;
+        Integer position = pendingPositions.putIfAbsent(key, operations.size());
+        if (position == null) {
+            operations.add(operation);
+            bufferedBytes += operation.sizeInBytes;
+            return;
+        }
+        BulkOperation pending = operations.get(position);
+        if (operation.type == BulkOperationType.UPDATE) {
+            // 局部更新只包含部分字段，不能覆盖之前的操作，追加到末尾并成为该文档最新的操作
+            pendingPositions.put(key, operations.size());
+            operations.add(operation);
+            bufferedBytes += operation.sizeInBytes;
+            LOG.debug("Appended partial update of document {} after pending {}", key, pending.type);
+            return;
+        }
+        if (supersedes(operation, pending)) {
+            operations.set(position, operation);
+            bufferedBytes += operation.sizeInBytes - pending.sizeInBytes;
         }
+        LOG.debug("Collapsed pending {} of document {} into {}", pending.type, key, operation.type);
     }
 
-    private static BulkOperation getBulkOperation(ChangedData element) {
+    private static boolean supersedes(BulkOperation operation, BulkOperation pending) {
+        if (operation.version == null || pending.version == null) {
+            return true;
+        }
+        int compare = Long.compare(operation.version, pending.version);
+        if (compare != 0) {
+            return compare > 0;
+        }
+        return operation.type == BulkOperationType.DELETE || pending.type != BulkOperationType.DELETE;
+    }
+
+    /**
+     * 距离上次刷新已超过刷新间隔时，提交当前缓冲区（不等待请求完成）
+     */
+    public void flushIfIntervalElapsed() throws IOException {
+        checkAsyncFailure();
+        if (!operations.isEmpty() && System.currentTimeMillis() - lastFlushTime >= flushIntervalMs) {
+            doFlush();
+            lastFlushTime = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 距离下一次按时间刷新的毫秒数，至少为 1
+     */
+    public long getMillisUntilNextFlush() {
+        return Math.max(1, lastFlushTime + flushIntervalMs - System.currentTimeMillis());
+    }
+
+    private static BulkOperation getBulkOperation(ChangedData element, String index, boolean externalVersion) {
         BulkOperation operation;
+        Long version = externalVersion && element.hasVersion() ? element.getVersion() : null;
 
         if ("d".equals(element.getOperation())) {
             // 处理删除操作
             operation = new BulkOperation(
                     BulkOperationType.DELETE,
+                    index,
+                    element.getPrimaryKeyValue(),
+                    element.getRouting(),
+                    null,
+                    version,
+                    estimateActionSize(index, element.getPrimaryKeyValue()),
                     element.getTable(),
+                    element.getSourceTimestamp()
+            );
+        } else if (element.isPartialUpdate()) {
+            // 局部更新：update API 不支持外部版本号，顺序由上游按文档分区与 InFlightDocuments 保证
+            byte[] document = element.getDocument();
+            operation = new BulkOperation(
+                    BulkOperationType.UPDATE,
+                    index,
                     element.getPrimaryKeyValue(),
-                    null
+                    element.getRouting(),
+                    document != null ? document : element.getData(),
+                    null,
+                    estimateActionSize(index, element.getPrimaryKeyValue()) + UPDATE_WRAPPER_SIZE
+                            + (document != null ? document.length + 1 : estimateDocumentSize(element.getData())),
+                    element.getTable(),
+                    element.getSourceTimestamp()
             );
         } else {
-            // 处理创建或更新操作
+            // 处理创建或更新操作，已预先序列化的文档按字节原样发送，大小是精确值
+            byte[] document = element.getDocument();
             operation = new BulkOperation(
                     BulkOperationType.INDEX,
-                    element.getTable(),
+                    index,
                     element.getPrimaryKeyValue(),
-                    element.getData()
+                    element.getRouting(),
+                    document != null ? document : element.getData(),
+                    version,
+                    estimateActionSize(index, element.getPrimaryKeyValue())
+                            + (document != null ? document.length + 1 : estimateDocumentSize(element.getData())),
+                    element.getTable(),
+                    element.getSourceTimestamp()
             );
         }
         return operation;
     }
 
+    /**
+     * 估算 bulk 元数据行的字节数，如 {"index":{"_index":"...","_id":"...","version":...,"version_type":"external_gte"}}
+     */
+    private static int estimateActionSize(String index, String id) {
+        return 64 + utf8Length(index) + utf8Length(id);
+    }
+
+    /**
+     * 估算文档序列化为 JSON 后的字节数，无需真正序列化
+     */
+    private static int estimateDocumentSize(Map<String, Object> data) {
+        if (data == null) {
+            return 4;
+        }
+        // 花括号与换行
+        int size = 3;
+        for (Map.Entry<String, Object> entry : data.entrySet()) {
+            // 引号、冒号与逗号
+            size += utf8Length(entry.getKey()) + 4 + estimateValueSize(entry.getValue());
+        }
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int estimateValueSize(Object value) {
+        if (value == null) {
+            return 4;
+        } else if (value instanceof Map<?, ?> map) {
+            return estimateDocumentSize((Map<String, Object>) map);
+        } else if (value instanceof List<?> list) {
+            int size = 2;
+            for (Object element : list) {
+                size += estimateValueSize(element) + 1;
+            }
+            return size;
+        } else if (value instanceof CharSequence text) {
+            return utf8Length(text) + 2;
+        } else if (value instanceof Long || value instanceof BigDecimal) {
+            return 20;
+        } else if (value instanceof Number) {
+            return 11;
+        } else if (value instanceof Boolean) {
+            return 5;
+        } else if (value instanceof byte[] bytes) {
+            // base64 编码
+            return (bytes.length + 2) / 3 * 4 + 2;
+        }
+        return 16;
+    }
+
+    private static int utf8Length(CharSequence text) {
+        if (text == null) {
+            return 0;
+        }
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * 提交当前缓冲区，并等待所有进行中的 bulk 请求完成，输入结束与关闭时调用
+     */
     @Override
     public void flush() throws IOException {
-        synchronized (operations) {
-            if (!operations.isEmpty()) {
-                doFlush();
-                lastFlushTime = System.currentTimeMillis();
-            }
+        flush(0);
+    }
+
+    /**
+     * 提交当前缓冲区，最多等待 timeoutMs 毫秒（不大于 0 时一直等待）。只等待已发出的请求及其后台重试，
+     * 超时返回 false，此时未确认的操作仍在 inFlightBatches 中，可以写入状态
+     */
+    boolean flush(long timeoutMs) throws IOException {
+        checkAsyncFailure();
+        if (!operations.isEmpty()) {
+            doFlush();
+            lastFlushTime = System.currentTimeMillis();
+        }
+        boolean completed = waitForInFlightRequests(timeoutMs);
+        checkAsyncFailure();
+        return completed;
+    }
+
+    /**
+     * 已提交但尚未被确认的操作数
+     */
+    int inFlightOperations() {
+        int count = 0;
+        for (List<BulkOperation> batch : inFlightBatches.values()) {
+            count += batch.size();
+        }
+        return count;
+    }
+
+    void checkAsyncFailure() throws IOException {
+        Throwable failure = asyncFailure.get();
+        if (failure != null) {
+            throw new IOException("Bulk request failed permanently, refusing to continue to avoid data loss", failure);
         }
     }
 
+    /**
+     * 把当前缓冲区交给后台 bulk 请求。进行中的请求数达到上限时阻塞等待，
+     * 同步模式下还会等待本次请求完成后才返回。
+     */
     private void doFlush() throws IOException {
         if (operations.isEmpty()) {
             return;
         }
 
-        int retryCount = 0;
-        boolean success = false;
-        int operationCount = operations.size();
-        
-        LOG.info("Executing bulk request with {} operations", operationCount);
+        List<BulkOperation> batch = operations;
+        long batchBytes = bufferedBytes;
+        operations = new ArrayList<>(sizing.actionsLimit());
+        bufferedBytes = 0;
+        if (deduplicate) {
+            pendingPositions.clear();
+        }
+
+        long batchId = nextBatchId++;
+        try {
+            inFlightDocuments.acquire(batchId, unversionedDocuments(batch));
+            inFlightLimiter.acquire();
+        } catch (InterruptedException e) {
+            inFlightDocuments.release(batchId);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for an in-flight bulk request slot", e);
+        }
+
+        LOG.debug("Executing bulk request with {} operations (~{} bytes)", batch.size(), batchBytes);
+        inFlightBatches.put(batchId, batch);
+        executeBulk(batchId, batch, 1);
 
-        while (!success && retryCount < MAX_RETRY_COUNT) {
+        if (!async) {
+            waitForInFlightRequests(0);
+        }
+    }
+
+    /**
+     * 异步执行一次 bulk 请求。整个请求失败时原样重试；部分条目失败时只重新提交被拒绝（429）的条目，
+     * 永久性错误（如 mapping 冲突）写入死信输出。全部处理完毕或放弃时归还许可
+     */
+    private void executeBulk(long batchId, List<BulkOperation> batch, int attempt) {
+        long bytes = 0;
+        for (BulkOperation operation : batch) {
+            bytes += operation.sizeInBytes;
+        }
+        long start = System.nanoTime();
+        CompletableFuture<BulkResponse> future;
+        try {
+            future = sendBulk(batch, bytes);
+        } catch (Exception e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+
+        future.whenComplete((response, error) -> {
+            long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
             try {
-                BulkRequest bulkRequest = getBulkRequest();
-                BulkResponse response = client.bulk(bulkRequest);
-
-                // 处理响应
-                if (response.errors()) {
-                    // 有错误发生
-                    int errorCount = 0;
-                    for (BulkResponseItem item : response.items()) {
-                        if (item.error() != null) {
-                            errorCount++;
-                            LOG.error("Failed to process item {}: {}",
-                                    item.id(), item.error().reason());
-                        }
-                    }
-                    
-                    if (errorCount > 0) {
-                        LOG.warn("{} out of {} operations failed", errorCount, operationCount);
+                if (error != null) {
+                    metrics.recordFailedRequest(latencyMs);
+                    sizing.onFailure(start);
+                    retryOrFail(batchId, batch, attempt, error);
+                } else {
+                    List<BulkOperation> rejected = handleResponse(batch, response, latencyMs);
+                    sizing.onResponse(start, batch.size(), latencyMs, rejected.size());
+                    if (rejected.isEmpty()) {
+                        inFlightBatches.remove(batchId);
+                        inFlightDocuments.release(batchId);
+                        inFlightLimiter.release();
+                    } else {
+                        // 只有被拒绝的条目仍未确认
+                        inFlightBatches.put(batchId, rejected);
+                        retryOrFail(batchId, rejected, attempt, null);
                     }
                 }
+            } catch (Throwable t) {
+                failAndRelease(batchId, t);
+            }
+        });
+    }
 
-                LOG.info("Bulk request completed with {} items in {} ms",
-                        operationCount, response.took());
-                
-                success = true;
-                // 清空操作列表
-                operations.clear();
+    /**
+     * 发出 bulk 请求。开启压缩时由 gzipEncoder 序列化并压缩请求体，按压缩后的实际字节数计入 numBytesSend
+     */
+    private CompletableFuture<BulkResponse> sendBulk(List<BulkOperation> batch, long estimatedBytes) throws IOException {
+        BulkRequest request = getBulkRequest(batch);
+        if (gzipEncoder == null) {
+            metrics.recordRequest(batch.size(), estimatedBytes);
+            return client.bulk(request);
+        }
+        GzipBulkEncoder.Encoded encoded = gzipEncoder.encode(request, estimatedBytes);
+        metrics.recordRequest(batch.size(), encoded.compressedBytes());
+        metrics.recordCompression(encoded.uncompressedBytes(), encoded.compressedBytes());
+        return client._transport().performRequestAsync(encoded.body(), GzipBulkEncoder.ENDPOINT, gzipOptions);
+    }
 
-            } catch (Exception e) {
-                retryCount++;
-                
-                if (retryCount < MAX_RETRY_COUNT) {
-                    LOG.warn("Error executing bulk request (attempt {}/{}): {}. Retrying...", 
-                             retryCount, MAX_RETRY_COUNT, e.getMessage());
-                    try {
-                        Thread.sleep(RETRY_BACKOFF_MS * retryCount);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        throw new IOException("Interrupted during retry backoff", ie);
-                    }
+    private void retryOrFail(long batchId, List<BulkOperation> operations, int attempt, Throwable error) {
+        if (attempt > maxRetries) {
+            String message = String.format("Giving up on %d operations after %d attempts", operations.size(), attempt);
+            LOG.error(message, error);
+            metrics.recordSendErrors(operations.size());
+            failAndRelease(batchId, error != null ? new IOException(message, error) : new IOException(message));
+            return;
+        }
+        long backoffMs = backoffWithJitter(attempt);
+        metrics.recordRetry(operations.size());
+        if (error != null) {
+            LOG.warn("Error executing bulk request with {} operations (attempt {}/{}): {}. Retrying in {} ms",
+                    operations.size(), attempt, maxRetries + 1, error.getMessage(), backoffMs);
+        } else {
+            LOG.warn("{} operations were rejected by Elasticsearch (attempt {}/{}). Retrying them in {} ms",
+                    operations.size(), attempt, maxRetries + 1, backoffMs);
+        }
+        CompletableFuture.delayedExecutor(backoffMs, TimeUnit.MILLISECONDS)
+                .execute(() -> executeBulk(batchId, operations, attempt + 1));
+    }
+
+    /**
+     * 指数退避加抖动：上限为 initialBackoff * 2^(attempt-1)（不超过 maxBackoff），实际等待时间在上限的一半到上限之间随机，
+     * 避免多个 subtask 同时重试再次压垮 Elasticsearch
+     */
+    private long backoffWithJitter(int attempt) {
+        long ceiling = initialBackoffMs << Math.min(attempt - 1, 20);
+        ceiling = Math.min(ceiling, maxBackoffMs);
+        long half = ceiling / 2;
+        return half + ThreadLocalRandom.current().nextLong(ceiling - half + 1);
+    }
+
+    /**
+     * 放弃的操作仍留在 inFlightBatches 中写入状态，释放文档与许可只是为了不让任务线程一直等待，由它抛出异步错误
+     */
+    private void failAndRelease(long batchId, Throwable failure) {
+        asyncFailure.compareAndSet(null, failure);
+        inFlightDocuments.release(batchId);
+        inFlightLimiter.release();
+    }
+
+    /**
+     * 批次中没有版本号的操作涉及的文档，带版本号的操作以 external_gte 写入，乱序到达时旧版本被拒绝，无需等待
+     */
+    private static Set<String> unversionedDocuments(List<BulkOperation> batch) {
+        Set<String> keys = null;
+        for (BulkOperation operation : batch) {
+            if (operation.version == null) {
+                if (keys == null) {
+                    keys = new HashSet<>();
+                }
+                keys.add(operation.index + '/' + operation.id);
+            }
+        }
+        return keys == null ? Set.of() : keys;
+    }
+
+    /**
+     * 处理 bulk 响应，返回需要重试的操作；响应条目与请求中的操作按顺序一一对应
+     */
+    private List<BulkOperation> handleResponse(List<BulkOperation> batch, BulkResponse response, long latencyMs) {
+        List<BulkOperation> rejected = new ArrayList<>();
+        metrics.recordResponse(latencyMs, response.took(), recordLatency(batch, response));
+        // 处理响应
+        if (response.errors()) {
+            // 有错误发生
+            int deadLetterCount = 0;
+            int staleCount = 0;
+            List<BulkResponseItem> items = response.items();
+            for (int i = 0; i < items.size(); i++) {
+                BulkResponseItem item = items.get(i);
+                if (item.error() == null) {
+                    continue;
+                }
+                BulkOperation operation = batch.get(i);
+                if (isVersionConflict(item) && operation.version != null) {
+                    // ES 中已有更新的版本，说明这是重放或乱序到达的旧变更，跳过即可
+                    staleCount++;
+                    continue;
+                }
+                metrics.recordFailedItem(item.status());
+                if (isRetryable(item)) {
+                    rejected.add(operation);
                 } else {
-                    LOG.error("Error executing bulk request after {} attempts", MAX_RETRY_COUNT, e);
+                    deadLetterCount++;
+                    LOG.error("Failed to process item {} in index {}: [{}] {}",
+                            item.id(), item.index(), item.error().type(), item.error().reason());
+                    DeadLetterOutput.write(operation.type.name().toLowerCase(), operation.index, operation.id,
+                            operation.routing, operation.version, item.status(), item.error().type(),
+                            item.error().reason(), operation.data);
                 }
             }
+
+            metrics.recordStaleItems(staleCount);
+            metrics.recordSendErrors(deadLetterCount);
+            if (staleCount > 0) {
+                LOG.debug("{} out of {} operations were skipped because a newer version is already indexed",
+                        staleCount, batch.size());
+            }
+            if (deadLetterCount > 0 || !rejected.isEmpty()) {
+                LOG.warn("{} out of {} operations failed: {} rejected and will be retried, {} sent to dead letter output",
+                        deadLetterCount + rejected.size(), batch.size(), rejected.size(), deadLetterCount);
+            }
         }
-        
-        if (!success) {
-            LOG.error("Failed to execute bulk request after {} attempts", MAX_RETRY_COUNT);
+
+        LOG.debug("Bulk request completed with {} items in {} ms (took {} ms)",
+                batch.size(), latencyMs, response.took());
+        return rejected;
+    }
+
+    /**
+     * 按表记录已确认写入的变更的同步延迟，失败与被拒绝的条目不计入，重试成功后再计入。返回确认写入的条目数
+     */
+    private int recordLatency(List<BulkOperation> batch, BulkResponse response) {
+        long now = System.currentTimeMillis();
+        int acknowledged = 0;
+        List<BulkResponseItem> items = response.items();
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i).error() != null) {
+                continue;
+            }
+            acknowledged++;
+            BulkOperation operation = batch.get(i);
+            metrics.recordLatency(operation.table, operation.sourceTimestamp, now);
         }
+        return acknowledged;
+    }
+
+    private static boolean isVersionConflict(BulkResponseItem item) {
+        return item.status() == 409 && "version_conflict_engine_exception".equals(item.error().type());
+    }
+
+    /**
+     * 429 / es_rejected_execution_exception 表示集群繁忙（写入队列已满），503 表示分片暂不可用，稍后重试即可。
+     * 局部更新没有版本号，409 说明 retry_on_conflict 次数内一直与其它写入冲突，并不是旧变更，同样重试
+     */
+    private static boolean isRetryable(BulkResponseItem item) {
+        return item.status() == 429
+                || isVersionConflict(item)
+                || item.status() == 503
+                || "es_rejected_execution_exception".equals(item.error().type());
     }
 
-    private BulkRequest getBulkRequest() {
+    /**
+     * 阻塞直到所有进行中的 bulk 请求（包括其重试）结束，或超过 timeoutMs 毫秒（不大于 0 时一直等待）。
+     * 等待期间定期输出剩余的请求数与操作数，便于判断 Elasticsearch 是否仍在推进。返回是否全部结束
+     */
+    private boolean waitForInFlightRequests(long timeoutMs) throws IOException {
+        long start = System.nanoTime();
+        long deadline = timeoutMs > 0 ? start + TimeUnit.MILLISECONDS.toNanos(timeoutMs) : Long.MAX_VALUE;
+        try {
+            while (true) {
+                long wait = Math.min(WAIT_PROGRESS_INTERVAL_NANOS, deadline - System.nanoTime());
+                if (wait <= 0) {
+                    return false;
+                }
+                if (inFlightLimiter.awaitIdle(wait)) {
+                    return true;
+                }
+                if (asyncFailure.get() != null) {
+                    // 后台请求已永久失败，不必再等待，由调用方抛出
+                    return false;
+                }
+                LOG.info("Waiting for bulk requests for {} ms, {} requests with {} operations in flight",
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                        inFlightLimiter.inFlight(), inFlightOperations());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for in-flight bulk requests", e);
+        }
+    }
+
+    /**
+     * 带版本号的操作使用 external_gte：版本号不小于已有文档时才写入，相同版本（同一事件重放）幂等。
+     * 注意删除后的版本信息只保留 index.gc_deletes（默认 60 秒），超过后重放更早的 index 会重新创建文档
+     */
+    private static BulkRequest getBulkRequest(List<BulkOperation> operations) {
         BulkRequest.Builder bulkRequestBuilder = new BulkRequest.Builder();
 
         for (BulkOperation operation : operations) {
+            VersionType versionType = operation.version == null ? null : VersionType.ExternalGte;
             switch (operation.type) {
                 case INDEX:
                     bulkRequestBuilder.operations(op -> op
                             .index(idx -> idx
                                     .index(operation.index)
                                     .id(operation.id)
-                                    .document(operation.data)
+                                    .routing(operation.routing)
+                                    .version(operation.version)
+                                    .versionType(versionType)
+                                    .document(operation.data instanceof byte[] bytes
+                                            ? BinaryData.of(bytes, ContentType.APPLICATION_JSON)
+                                            : operation.data)
                             )
                     );
                     break;
+                case UPDATE:
+                    // 文档不存在时以局部字段创建，宽表的各部分可以任意顺序到达
+                    if (operation.data instanceof byte[] bytes) {
+                        bulkRequestBuilder.operations(op -> op
+                                .update(upd -> upd
+                                        .index(operation.index)
+                                        .id(operation.id)
+                                        .routing(operation.routing)
+                                        .retryOnConflict(UPDATE_RETRY_ON_CONFLICT)
+                                        .binaryAction(partialUpdateAction(bytes))
+                                )
+                        );
+                    } else {
+                        bulkRequestBuilder.operations(op -> op
+                                .update(upd -> upd
+                                        .index(operation.index)
+                                        .id(operation.id)
+                                        .routing(operation.routing)
+                                        .retryOnConflict(UPDATE_RETRY_ON_CONFLICT)
+                                        .action(action -> action
+                                                .doc(operation.data)
+                                                .docAsUpsert(true))
+                                )
+                        );
+                    }
+                    break;
                 case DELETE:
                     bulkRequestBuilder.operations(op -> op
                             .delete(del -> del
                                     .index(operation.index)
                                     .id(operation.id)
+                                    .routing(operation.routing)
+                                    .version(operation.version)
+                                    .versionType(versionType)
                             )
                     );
                     break;
@@ -342,17 +1180,31 @@ class ElasticSearchBulkWriter implements BulkWriter<ChangedData> {
         return bulkRequestBuilder.build();
     }
 
+    /**
+     * 预先序列化的局部文档直接拼接为 {"doc":...,"doc_as_upsert":true}，不再解析
+     */
+    private static BinaryData partialUpdateAction(byte[] document) {
+        byte[] action = new byte[PARTIAL_UPDATE_PREFIX.length + document.length + PARTIAL_UPDATE_SUFFIX.length];
+        System.arraycopy(PARTIAL_UPDATE_PREFIX, 0, action, 0, PARTIAL_UPDATE_PREFIX.length);
+        System.arraycopy(document, 0, action, PARTIAL_UPDATE_PREFIX.length, document.length);
+        System.arraycopy(PARTIAL_UPDATE_SUFFIX, 0, action, PARTIAL_UPDATE_PREFIX.length + document.length,
+                PARTIAL_UPDATE_SUFFIX.length);
+        return BinaryData.of(action, ContentType.APPLICATION_JSON);
+    }
+
     @Override
     public void finish() throws IOException {
         flush();
     }
 
-    // 内部类用于表示批量操作
-    private record BulkOperation(BulkOperationType type, String index, String id, Object data) {
+    // 内部类用于表示批量操作，data 为文档 Map 或预先序列化好的 JSON 字节，routing 为 null 时按 ID 路由，
+    // table 与 sourceTimestamp 用于统计同步延迟。checkpoint 时未确认的操作由 ElasticsearchWriterStateSerializer 写入状态
+    record BulkOperation(BulkOperationType type, String index, String id, String routing, Object data, Long version,
+                                 int sizeInBytes, String table, long sourceTimestamp) {
     }
 
     // 枚举用于表示操作类型
-    private enum BulkOperationType {
-        INDEX, DELETE
+    enum BulkOperationType {
+        INDEX, UPDATE, DELETE
     }
 }
@@ -0,0 +1,21 @@
+package com.mall4cloud.sync;
+
+import java.util.List;
+
+/**
+ * sink writer 的状态：checkpoint 时尚未被 Elasticsearch 确认的 bulk 操作，按发送顺序排列，
+ * 以及写入该状态的 subtask 序号与并行度，恢复时据此判断状态是否被重新分配到了其它 subtask
+ */
+record ElasticsearchWriterState(int subtaskIndex, int parallelism,
+                                List<ElasticSearchBulkWriter.BulkOperation> operations) {
+    // 旧版本的状态没有记录 subtask
+    static final int UNKNOWN = -1;
+
+    /**
+     * 状态是否由当前 subtask 在相同的并行度下写入；旧版本的状态无法判断，视为是
+     */
+    boolean writtenBy(int currentSubtaskIndex, int currentParallelism) {
+        return parallelism == UNKNOWN
+                || subtaskIndex == currentSubtaskIndex && parallelism == currentParallelism;
+    }
+}
@@ -0,0 +1,154 @@
+package com.mall4cloud.sync;
+
+import com.mall4cloud.sync.ElasticSearchBulkWriter.BulkOperation;
+import com.mall4cloud.sync.ElasticSearchBulkWriter.BulkOperationType;
+import org.apache.flink.core.io.SimpleVersionedSerializer;
+import org.apache.flink.core.memory.DataInputDeserializer;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.apache.flink.types.StringValue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * sink writer 状态的序列化器。
+ * <p>
+ * 编码格式：写入状态的 subtask 序号与并行度（版本 2 起）、索引名与表名的字典、操作数，每个操作依次为类型与标志位字节、索引与表的字典编号、文档 ID、
+ * 可选的路由、可选的版本号、源端提交时间、估算字节数、文档（预序列化的 JSON 字节，或与 ChangedDataSerializer 相同编码的 Map）
+ */
+final class ElasticsearchWriterStateSerializer implements SimpleVersionedSerializer<ElasticsearchWriterState> {
+    static final ElasticsearchWriterStateSerializer INSTANCE = new ElasticsearchWriterStateSerializer();
+
+    private static final int VERSION = 2;
+    // 版本 1 没有 subtask 序号与并行度
+    private static final int VERSION_WITHOUT_SUBTASK = 1;
+
+    private static final int FLAG_VERSION = 1 << 2;
+    private static final int FLAG_BYTES = 1 << 3;
+    private static final int FLAG_MAP = 1 << 4;
+    // 旧状态中没有该标志位，恢复后按 ID 路由
+    private static final int FLAG_ROUTING = 1 << 5;
+    // 低两位为操作类型
+    private static final int TYPE_MASK = 0b11;
+    private static final BulkOperationType[] TYPES = BulkOperationType.values();
+
+    private ElasticsearchWriterStateSerializer() {
+    }
+
+    @Override
+    public int getVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public byte[] serialize(ElasticsearchWriterState state) throws IOException {
+        List<BulkOperation> operations = state.operations();
+        // 一个缓冲区内的操作只涉及少数几个索引与表，名字只写一次
+        Map<String, Integer> names = new HashMap<>();
+        List<String> dictionary = new ArrayList<>();
+        for (BulkOperation operation : operations) {
+            for (String name : new String[]{operation.index(), operation.table()}) {
+                if (names.putIfAbsent(name, dictionary.size()) == null) {
+                    dictionary.add(name);
+                }
+            }
+        }
+
+        DataOutputSerializer out = new DataOutputSerializer(estimateSize(operations));
+        out.writeInt(state.subtaskIndex());
+        out.writeInt(state.parallelism());
+        out.writeInt(dictionary.size());
+        for (String name : dictionary) {
+            StringValue.writeString(name, out);
+        }
+        out.writeInt(operations.size());
+        for (BulkOperation operation : operations) {
+            int flags = operation.type().ordinal();
+            if (operation.version() != null) {
+                flags |= FLAG_VERSION;
+            }
+            if (operation.routing() != null) {
+                flags |= FLAG_ROUTING;
+            }
+            if (operation.data() instanceof byte[]) {
+                flags |= FLAG_BYTES;
+            } else if (operation.data() != null) {
+                flags |= FLAG_MAP;
+            }
+            out.writeByte(flags);
+            out.writeInt(names.get(operation.index()));
+            out.writeInt(names.get(operation.table()));
+            StringValue.writeString(operation.id(), out);
+            if (operation.routing() != null) {
+                StringValue.writeString(operation.routing(), out);
+            }
+            if (operation.version() != null) {
+                out.writeLong(operation.version());
+            }
+            out.writeLong(operation.sourceTimestamp());
+            out.writeInt(operation.sizeInBytes());
+            if (operation.data() instanceof byte[] bytes) {
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            } else if (operation.data() instanceof Map<?, ?> map) {
+                ChangedDataSerializer.writeMap(map, out);
+            }
+        }
+        return out.getCopyOfBuffer();
+    }
+
+    /**
+     * 估算字节数本身就接近 JSON 的大小，以此预分配缓冲区，避免序列化过程中反复扩容
+     */
+    private static int estimateSize(List<BulkOperation> operations) {
+        long size = 64;
+        for (BulkOperation operation : operations) {
+            size += operation.sizeInBytes();
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE - 8);
+    }
+
+    @Override
+    public ElasticsearchWriterState deserialize(int version, byte[] serialized) throws IOException {
+        if (version != VERSION && version != VERSION_WITHOUT_SUBTASK) {
+            throw new IOException("Unknown Elasticsearch writer state version " + version);
+        }
+        DataInputDeserializer in = new DataInputDeserializer(serialized);
+        int subtaskIndex = ElasticsearchWriterState.UNKNOWN;
+        int parallelism = ElasticsearchWriterState.UNKNOWN;
+        if (version != VERSION_WITHOUT_SUBTASK) {
+            subtaskIndex = in.readInt();
+            parallelism = in.readInt();
+        }
+        String[] dictionary = new String[in.readInt()];
+        for (int i = 0; i < dictionary.length; i++) {
+            dictionary[i] = StringValue.readString(in);
+        }
+        int size = in.readInt();
+        List<BulkOperation> operations = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int flags = in.readByte();
+            String index = dictionary[in.readInt()];
+            String table = dictionary[in.readInt()];
+            String id = StringValue.readString(in);
+            String routing = (flags & FLAG_ROUTING) != 0 ? StringValue.readString(in) : null;
+            Long operationVersion = (flags & FLAG_VERSION) != 0 ? in.readLong() : null;
+            long sourceTimestamp = in.readLong();
+            int sizeInBytes = in.readInt();
+            Object data = null;
+            if ((flags & FLAG_BYTES) != 0) {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                data = bytes;
+            } else if ((flags & FLAG_MAP) != 0) {
+                data = ChangedDataSerializer.readMap(in);
+            }
+            operations.add(new BulkOperation(TYPES[flags & TYPE_MASK], index, id, routing, data, operationVersion,
+                    sizeInBytes, table, sourceTimestamp));
+        }
+        return new ElasticsearchWriterState(subtaskIndex, parallelism, operations);
+    }
+}
@@ -0,0 +1,113 @@
+package com.mall4cloud.sync;
+
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.NdJsonpSerializable;
+import co.elastic.clients.transport.endpoints.SimpleEndpoint;
+import co.elastic.clients.util.BinaryData;
+import co.elastic.clients.util.ContentType;
+import jakarta.json.stream.JsonGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 把 bulk 请求序列化为 NDJSON 并用 gzip 压缩，以 Content-Encoding: gzip 发送。
+ * 与客户端内部的序列化方式相同，但两个输出缓冲区在请求之间复用，只有压缩后的结果需要复制一份随请求发出，
+ * 并且能够得到每个请求压缩前后的实际字节数。重试时可能在回调线程中调用，encode 需要加锁
+ */
+final class GzipBulkEncoder {
+    /**
+     * 与 BulkRequest 相同的 _bulk 请求，请求体为已压缩的 NDJSON
+     */
+    static final SimpleEndpoint<BinaryData, BulkResponse> ENDPOINT = new SimpleEndpoint<>("es/bulk",
+            request -> "POST",
+            request -> "/_bulk",
+            request -> Map.of(),
+            request -> Map.of(),
+            request -> Map.of(),
+            request -> request,
+            BulkResponse._DESERIALIZER);
+
+    static final String CONTENT_ENCODING = "gzip";
+
+    private static final int NEWLINE = '\n';
+    private static final int GZIP_BUFFER_SIZE = 8192;
+
+    private final JsonpMapper mapper;
+    private final Buffer uncompressed;
+    private final Buffer compressed;
+
+    GzipBulkEncoder(JsonpMapper mapper, int initialCapacity) {
+        this.mapper = mapper;
+        this.uncompressed = new Buffer(initialCapacity);
+        // JSON 文本的压缩率通常在 4 倍以上
+        this.compressed = new Buffer(Math.max(GZIP_BUFFER_SIZE, initialCapacity / 4));
+    }
+
+    /**
+     * estimatedBytes 为操作的估算字节数，用于预先扩大缓冲区，避免序列化过程中反复扩容
+     */
+    synchronized Encoded encode(BulkRequest request, long estimatedBytes) throws IOException {
+        uncompressed.reset();
+        uncompressed.ensureCapacity(estimatedBytes);
+        writeNdJson(request, uncompressed);
+
+        compressed.reset();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed, GZIP_BUFFER_SIZE)) {
+            uncompressed.writeTo(gzip);
+        }
+        return new Encoded(BinaryData.of(compressed.toByteArray(), ContentType.APPLICATION_JSON),
+                uncompressed.size(), compressed.size());
+    }
+
+    /**
+     * 与 ElasticsearchTransportBase 收集 NDJSON 行的方式一致：动作行与文档各占一行，已序列化的文档原样写入
+     */
+    private void writeNdJson(NdJsonpSerializable value, OutputStream out) throws IOException {
+        Iterator<?> values = value._serializables();
+        while (values.hasNext()) {
+            Object item = values.next();
+            if (item == null) {
+                continue;
+            }
+            if (item instanceof NdJsonpSerializable nested && item != value) {
+                writeNdJson(nested, out);
+                continue;
+            }
+            if (item instanceof BinaryData data) {
+                data.writeTo(out);
+            } else {
+                JsonGenerator generator = mapper.jsonProvider().createGenerator(out);
+                mapper.serialize(item, generator);
+                // 关闭 generator 时也会关闭 out，ByteArrayOutputStream 的 close 不做任何事
+                generator.close();
+            }
+            out.write(NEWLINE);
+        }
+    }
+
+    record Encoded(BinaryData body, long uncompressedBytes, long compressedBytes) {
+    }
+
+    /**
+     * reset 后保留容量，并允许按估算值预先扩容
+     */
+    private static final class Buffer extends ByteArrayOutputStream {
+        private Buffer(int initialCapacity) {
+            super(initialCapacity);
+        }
+
+        private void ensureCapacity(long capacity) {
+            if (capacity > buf.length) {
+                buf = Arrays.copyOf(buf, (int) Math.min(capacity, Integer.MAX_VALUE - 8));
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.mall4cloud.sync;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 进行中的 bulk 请求所涉及的、没有版本号的文档（索引 + ID）。
+ * 没有版本号的写入（局部更新、订单宽表、未开启外部版本号时的全部写入）在 Elasticsearch 中后到者生效，
+ * 同一文档的两个请求同时进行，或前一个请求中被拒绝的条目晚于后一个请求重试时，旧的变更会覆盖新的变更。
+ * 包含同一文档的后续批次要等之前的请求（包括重试）确认或放弃后再发出；只涉及其它文档的批次不受影响
+ */
+final class InFlightDocuments {
+    // 文档 -> 包含该文档的进行中批次数
+    private final Map<String, Integer> documents = new HashMap<>();
+    // 批次编号 -> 该批次登记的文档
+    private final Map<Long, Set<String>> batches = new HashMap<>();
+
+    /**
+     * 等待 keys 中的文档都不在进行中的批次里，然后登记为 batchId 的文档
+     */
+    synchronized void acquire(long batchId, Set<String> keys) throws InterruptedException {
+        if (keys.isEmpty()) {
+            return;
+        }
+        while (containsAny(keys)) {
+            wait();
+        }
+        for (String key : keys) {
+            documents.merge(key, 1, Integer::sum);
+        }
+        batches.put(batchId, keys);
+    }
+
+    /**
+     * 批次已确认或放弃，释放它登记的文档
+     */
+    synchronized void release(long batchId) {
+        Set<String> keys = batches.remove(batchId);
+        if (keys == null) {
+            return;
+        }
+        for (String key : keys) {
+            documents.computeIfPresent(key, (k, count) -> count == 1 ? null : count - 1);
+        }
+        notifyAll();
+    }
+
+    synchronized int size() {
+        return documents.size();
+    }
+
+    private boolean containsAny(Set<String> keys) {
+        if (documents.isEmpty()) {
+            return false;
+        }
+        for (String key : keys) {
+            if (documents.containsKey(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
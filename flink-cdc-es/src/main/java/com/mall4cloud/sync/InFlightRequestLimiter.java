@@ -0,0 +1,67 @@
+package com.mall4cloud.sync;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 限制同时进行中的 bulk 请求数，相当于许可数可以随时调整的信号量：
+ * 调小上限时已发出的请求不受影响，只是在进行中的请求数降到新上限以下之前不再发出新请求
+ */
+final class InFlightRequestLimiter {
+    private int limit;
+    private int inFlight;
+
+    InFlightRequestLimiter(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1, got " + limit);
+        }
+        this.limit = limit;
+    }
+
+    /**
+     * 进行中的请求数达到上限时阻塞
+     */
+    synchronized void acquire() throws InterruptedException {
+        while (inFlight >= limit) {
+            wait();
+        }
+        inFlight++;
+    }
+
+    synchronized void release() {
+        if (inFlight > 0) {
+            inFlight--;
+            notifyAll();
+        }
+    }
+
+    synchronized void setLimit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1, got " + limit);
+        }
+        this.limit = limit;
+        notifyAll();
+    }
+
+    /**
+     * 等待所有进行中的请求结束，最多等待 timeoutNanos 纳秒，返回是否已全部结束
+     */
+    synchronized boolean awaitIdle(long timeoutNanos) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (inFlight > 0) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return true;
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+
+    synchronized int limit() {
+        return limit;
+    }
+}
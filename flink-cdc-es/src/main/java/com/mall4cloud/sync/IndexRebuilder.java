@@ -0,0 +1,234 @@
+package com.mall4cloud.sync;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.mapping.TypeMapping;
+import co.elastic.clients.elasticsearch.indices.IndexSettings;
+import co.elastic.clients.elasticsearch.indices.IndexState;
+import co.elastic.clients.elasticsearch.indices.update_aliases.Action;
+import co.elastic.clients.transport.ElasticsearchTransport;
+import org.apache.flink.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 全量重建索引，运行在作业提交端：
+ * <ol>
+ *     <li>开始前记录当前 binlog 位置，重建完成后增量作业从该位置启动（mysql.startup.mode=SPECIFIC_OFFSET），补齐重建期间的变更</li>
+ *     <li>为每个索引创建 索引名_后缀 的新索引，沿用现有索引的分片数与 mapping，写入期间关闭刷新、副本数为 0</li>
+ *     <li>快照读取完成、作业正常结束后恢复刷新间隔与副本数，refresh 后在同一个 _aliases 请求中原子地把别名切换到新索引</li>
+ * </ol>
+ * 切换前读请求一直访问旧索引。旧索引保留以便回滚，但原来是与别名同名的普通索引时，只能在切换别名的同一请求中删除
+ */
+public class IndexRebuilder implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(IndexRebuilder.class);
+
+    private static final DateTimeFormatter SUFFIX_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+    // 没有现有索引可参考时恢复为 Elasticsearch 的默认值
+    private static final String DEFAULT_REPLICAS = "1";
+    private static final String DEFAULT_REFRESH_INTERVAL = "1s";
+
+    private final ElasticsearchTransport transport;
+    private final ElasticsearchClient client;
+    private final String suffix;
+    private final Set<String> aliases;
+    // 别名 -> 重建完成后新索引要恢复的设置
+    private final Map<String, RestoreSettings> restoreSettings = new LinkedHashMap<>();
+
+    public IndexRebuilder(Configuration config) {
+        this.transport = ElasticsearchSinkWriter.createTransport(config);
+        this.client = new ElasticsearchClient(transport);
+        this.suffix = config.get(SyncOptions.REBUILD_INDEX_SUFFIX);
+        this.aliases = targetIndices(config);
+    }
+
+    /**
+     * 补全重建模式的配置：生成索引后缀，使用更大的 bulk 请求。返回的配置随 sink 一起分发，各 subtask 使用同一个后缀
+     */
+    public static Configuration rebuildConfiguration(Configuration config) {
+        Configuration rebuild = new Configuration(config);
+        if (rebuild.getOptional(SyncOptions.REBUILD_INDEX_SUFFIX).isEmpty()) {
+            rebuild.set(SyncOptions.REBUILD_INDEX_SUFFIX, LocalDateTime.now().format(SUFFIX_FORMAT));
+        }
+        rebuild.set(SyncOptions.BULK_MAX_ACTIONS, config.get(SyncOptions.REBUILD_BULK_MAX_ACTIONS));
+        rebuild.set(SyncOptions.BULK_MAX_SIZE, config.get(SyncOptions.REBUILD_BULK_MAX_SIZE));
+        return rebuild;
+    }
+
+    public static String versionedIndex(String index, String suffix) {
+        return index + '_' + suffix;
+    }
+
+    /**
+     * sink 会写入的全部索引：未排除的表各自一个索引，构建订单宽表时订单相关的三张表合并为 orders 索引
+     */
+    static Set<String> targetIndices(Configuration config) {
+        TableFilters filters = TableFilters.fromConfiguration(config);
+        boolean denormalizeOrders = config.get(SyncOptions.DENORMALIZE_ORDERS);
+        Set<String> indices = new LinkedHashSet<>();
+        for (String table : config.get(SyncOptions.MYSQL_TABLES)) {
+            if (filters.isExcluded(table)) {
+                continue;
+            }
+            if (denormalizeOrders && (OrderDocumentBuilder.ORDER_TABLE.equals(table)
+                    || OrderDocumentBuilder.ORDER_ADDR_TABLE.equals(table)
+                    || OrderDocumentBuilder.ORDER_ITEM_TABLE.equals(table))) {
+                indices.add(OrderDocumentBuilder.ORDERS_INDEX);
+            } else {
+                indices.add(table);
+            }
+        }
+        return indices;
+    }
+
+    /**
+     * 读取当前的 binlog 位置，需要 REPLICATION CLIENT 权限
+     */
+    public static BinlogPosition currentBinlogPosition(Configuration config) throws SQLException {
+        try (Connection connection = SyncConfig.openMysqlConnection(config);
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SHOW MASTER STATUS")) {
+            if (!rs.next()) {
+                throw new IllegalStateException("Cannot read the current binlog position, is binlog enabled?");
+            }
+            return new BinlogPosition(rs.getString("File"), rs.getLong("Position"));
+        }
+    }
+
+    /**
+     * 记录重建开始时的 binlog 位置并创建新索引，在提交作业之前调用
+     */
+    public BinlogPosition prepare(Configuration config) throws IOException, SQLException {
+        BinlogPosition position = currentBinlogPosition(config);
+        Path record = Paths.get(config.get(SyncOptions.CHECKPOINT_DIR), "rebuild-" + suffix + ".properties");
+        Files.createDirectories(record.toAbsolutePath().getParent());
+        Files.writeString(record, "# 全量重建 " + suffix + " 开始时的 binlog 位置，重建完成后增量作业从这里启动\n"
+                + SyncOptions.MYSQL_STARTUP_MODE.key() + '=' + SyncOptions.StartupMode.SPECIFIC_OFFSET + '\n'
+                + SyncOptions.MYSQL_STARTUP_BINLOG_FILE.key() + '=' + position.file() + '\n'
+                + SyncOptions.MYSQL_STARTUP_BINLOG_POSITION.key() + '=' + position.position() + '\n',
+                StandardCharsets.UTF_8);
+        LOG.info("Rebuild {} starts at binlog position {}, recorded in {}", suffix, position, record.toAbsolutePath());
+
+        for (String alias : aliases) {
+            createIndex(alias, versionedIndex(alias, suffix));
+        }
+        return position;
+    }
+
+    private void createIndex(String alias, String index) throws IOException {
+        String shards = null;
+        TypeMapping mappings = null;
+        RestoreSettings restore = new RestoreSettings(DEFAULT_REPLICAS, DEFAULT_REFRESH_INTERVAL);
+        Map<String, IndexState> current = currentIndices(alias);
+        if (!current.isEmpty()) {
+            // 别名可能指向多个索引，以任意一个为准
+            IndexState state = current.values().iterator().next();
+            IndexSettings settings = state.settings() == null ? null
+                    : state.settings().index() != null ? state.settings().index() : state.settings();
+            if (settings != null) {
+                shards = settings.numberOfShards();
+                restore = new RestoreSettings(
+                        settings.numberOfReplicas() != null ? settings.numberOfReplicas() : DEFAULT_REPLICAS,
+                        settings.refreshInterval() != null ? settings.refreshInterval().time() : DEFAULT_REFRESH_INTERVAL);
+            }
+            mappings = state.mappings();
+        }
+        restoreSettings.put(alias, restore);
+
+        if (client.indices().exists(e -> e.index(index)).value()) {
+            // 使用固定后缀重新执行时复用已有的索引
+            LOG.warn("Index {} already exists, reusing it for the rebuild", index);
+            client.indices().putSettings(p -> p.index(index)
+                    .settings(s -> s.numberOfReplicas("0").refreshInterval(t -> t.time("-1"))));
+            return;
+        }
+        String numberOfShards = shards;
+        TypeMapping typeMapping = mappings;
+        client.indices().create(c -> {
+            c.index(index).settings(s -> s
+                    .numberOfShards(numberOfShards)
+                    .numberOfReplicas("0")
+                    .refreshInterval(t -> t.time("-1")));
+            if (typeMapping != null) {
+                c.mappings(typeMapping);
+            }
+            return c;
+        });
+        LOG.info("Created index {} for alias {} with refresh disabled and no replicas, settings to restore: {}",
+                index, alias, restore);
+    }
+
+    /**
+     * 恢复新索引的设置并原子地切换全部别名，在作业正常结束后调用
+     */
+    public void finish() throws IOException {
+        List<Action> actions = new ArrayList<>();
+        for (String alias : aliases) {
+            String index = versionedIndex(alias, suffix);
+            RestoreSettings restore = restoreSettings.getOrDefault(alias,
+                    new RestoreSettings(DEFAULT_REPLICAS, DEFAULT_REFRESH_INTERVAL));
+            client.indices().putSettings(p -> p.index(index)
+                    .settings(s -> s.numberOfReplicas(restore.replicas())
+                            .refreshInterval(t -> t.time(restore.refreshInterval()))));
+            client.indices().refresh(r -> r.index(index));
+
+            for (String previous : currentIndices(alias).keySet()) {
+                if (previous.equals(index)) {
+                    continue;
+                }
+                if (previous.equals(alias)) {
+                    // 与别名同名的普通索引必须删除后才能创建别名
+                    LOG.warn("Index {} is a concrete index, it will be deleted when the alias is switched", alias);
+                    actions.add(Action.of(a -> a.removeIndex(r -> r.index(alias))));
+                } else {
+                    actions.add(Action.of(a -> a.remove(r -> r.index(previous).alias(alias))));
+                }
+            }
+            actions.add(Action.of(a -> a.add(add -> add.index(index).alias(alias))));
+        }
+        client.indices().updateAliases(u -> u.actions(actions));
+        LOG.info("Rebuild {} finished, aliases {} now point to the new indices", suffix, aliases);
+    }
+
+    /**
+     * 别名（或同名的普通索引）当前对应的索引，不存在时返回空
+     */
+    private Map<String, IndexState> currentIndices(String alias) throws IOException {
+        if (!client.indices().exists(e -> e.index(alias)).value()) {
+            return Map.of();
+        }
+        return client.indices().get(g -> g.index(alias)).result();
+    }
+
+    @Override
+    public void close() throws IOException {
+        transport.close();
+    }
+
+    public record BinlogPosition(String file, long position) {
+        @Override
+        public String toString() {
+            return file + ':' + position;
+        }
+    }
+
+    private record RestoreSettings(String replicas, String refreshInterval) {
+    }
+}
@@ -0,0 +1,327 @@
+package com.mall4cloud.sync;
+
+import org.apache.flink.cdc.connectors.shaded.org.apache.kafka.connect.data.Field;
+import org.apache.flink.cdc.connectors.shaded.org.apache.kafka.connect.data.Schema;
+import org.apache.flink.cdc.connectors.shaded.org.apache.kafka.connect.data.Struct;
+import org.apache.flink.configuration.Configuration;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 按表配置写入的索引名与路由，在反序列化阶段根据完整的行数据计算，局部更新与删除也能找到原文档所在的索引与分片：
+ * <ul>
+ *     <li>索引名模板：es.index.name.&lt;表名&gt;，如 order-{create_time:yyyy.MM} 按下单月份写入不同的索引，
+ *     {列名} 直接取列值（转为小写），{列名:格式} 按 DateTimeFormatter 格式化时间列。sink 会把这些索引加入以表名命名的别名，
+ *     读取时仍查询表名</li>
+ *     <li>路由：es.index.routing.&lt;表名&gt;，以该列的值作为 _routing，同一用户的订单落在同一个分片上</li>
+ * </ul>
+ * 构建订单宽表时 orders 索引的配置按 order 表的行计算，订单项与收货地址沿用所属订单的索引与路由。
+ * 用作索引名或路由的列在行的生命周期内不应改变，否则更新会写入另一个索引或分片，留下旧文档
+ */
+public class IndexRouting implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public static final IndexRouting NONE = new IndexRouting(Map.of());
+
+    // 列值为 null 时在索引名中的替代值，删除时由同一行计算出相同的索引
+    static final String NULL_VALUE = "none";
+
+    // 源表名 -> 规则
+    private final Map<String, Rule> rules;
+
+    public IndexRouting(Map<String, Rule> rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * 从作业配置读取规则。构建订单宽表时 es.index.*.orders 作用于 order 表的行，不能再单独配置三张订单表
+     */
+    public static IndexRouting fromConfiguration(Configuration config) {
+        ZoneId zone = ZoneId.of(config.get(SyncOptions.MYSQL_SERVER_TIME_ZONE));
+        boolean denormalizeOrders = config.get(SyncOptions.DENORMALIZE_ORDERS);
+        Map<String, String> templates = new HashMap<>();
+        Map<String, String> routings = new HashMap<>();
+        config.toMap().forEach((key, value) -> {
+            if (key.startsWith(SyncOptions.INDEX_NAME_PREFIX)) {
+                templates.put(key.substring(SyncOptions.INDEX_NAME_PREFIX.length()), value.trim());
+            } else if (key.startsWith(SyncOptions.INDEX_ROUTING_PREFIX)) {
+                routings.put(key.substring(SyncOptions.INDEX_ROUTING_PREFIX.length()), value.trim());
+            }
+        });
+
+        Map<String, Rule> rules = new HashMap<>();
+        List<String> indices = new ArrayList<>(templates.keySet());
+        routings.keySet().stream().filter(index -> !templates.containsKey(index)).forEach(indices::add);
+        for (String index : indices) {
+            String sourceTable = index;
+            if (denormalizeOrders) {
+                if (OrderDocumentBuilder.ORDER_TABLE.equals(index) || OrderDocumentBuilder.ORDER_ADDR_TABLE.equals(index)
+                        || OrderDocumentBuilder.ORDER_ITEM_TABLE.equals(index)) {
+                    throw new IllegalArgumentException("Table " + index + " is written to the "
+                            + OrderDocumentBuilder.ORDERS_INDEX + " index when " + SyncOptions.DENORMALIZE_ORDERS.key()
+                            + "=true, configure " + SyncOptions.INDEX_NAME_PREFIX + OrderDocumentBuilder.ORDERS_INDEX
+                            + " or " + SyncOptions.INDEX_ROUTING_PREFIX + OrderDocumentBuilder.ORDERS_INDEX + " instead");
+                }
+                if (OrderDocumentBuilder.ORDERS_INDEX.equals(index)) {
+                    sourceTable = OrderDocumentBuilder.ORDER_TABLE;
+                }
+            }
+            String routing = routings.get(index);
+            rules.put(sourceTable, new Rule(index, parseTemplate(templates.getOrDefault(index, index)),
+                    routing == null || routing.isEmpty() ? null : routing, zone));
+        }
+        return new IndexRouting(rules);
+    }
+
+    /**
+     * 解析索引名模板，{列名} 与 {列名:格式} 之外为原样保留的文字
+     */
+    static List<Part> parseTemplate(String template) {
+        List<Part> parts = new ArrayList<>();
+        int pos = 0;
+        while (pos < template.length()) {
+            int open = template.indexOf('{', pos);
+            if (open < 0) {
+                parts.add(Part.literal(template.substring(pos)));
+                break;
+            }
+            if (open > pos) {
+                parts.add(Part.literal(template.substring(pos, open)));
+            }
+            int close = template.indexOf('}', open);
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed '{' in index name template: " + template);
+            }
+            String placeholder = template.substring(open + 1, close);
+            int colon = placeholder.indexOf(':');
+            String column = (colon < 0 ? placeholder : placeholder.substring(0, colon)).trim();
+            if (column.isEmpty()) {
+                throw new IllegalArgumentException("Missing column name in index name template: " + template);
+            }
+            String pattern = colon < 0 ? null : placeholder.substring(colon + 1);
+            if (pattern != null) {
+                // 提前检查格式是否合法
+                DateTimeFormatter.ofPattern(pattern, Locale.ROOT);
+            }
+            parts.add(new Part(null, column, pattern));
+            pos = close + 1;
+        }
+        if (parts.isEmpty() || parts.get(0).literal() == null) {
+            throw new IllegalArgumentException("Index name template must start with a fixed prefix: " + template);
+        }
+        for (Part part : parts) {
+            if (part.literal() != null && !part.literal().matches("[a-z0-9_.-]+")) {
+                throw new IllegalArgumentException("Index name template may only contain lowercase letters, digits, "
+                        + "'_', '.' and '-' outside placeholders: " + template);
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * 该表的规则，未配置时返回 null
+     */
+    public Rule rule(String table) {
+        return rules.get(table);
+    }
+
+    /**
+     * 是否有表的索引名不等于表名，此时 sink 需要维护别名，重建索引不支持这种情况
+     */
+    public boolean renamesIndices() {
+        return !renamedAliases().isEmpty();
+    }
+
+    /**
+     * 索引名不等于表名的规则对应的别名，sink 把按模板创建的索引加入这些别名
+     */
+    public Set<String> renamedAliases() {
+        Set<String> aliases = new TreeSet<>();
+        for (Rule rule : rules.values()) {
+            if (!rule.isDefaultIndex()) {
+                aliases.add(rule.alias());
+            }
+        }
+        return aliases;
+    }
+
+    @Override
+    public String toString() {
+        return "IndexRouting" + rules.values();
+    }
+
+    /**
+     * 索引名模板的一段：literal 不为 null 时为文字，否则为列值，pattern 不为 null 时按时间格式化
+     */
+    record Part(String literal, String column, String pattern) implements Serializable {
+        static Part literal(String literal) {
+            return new Part(literal, null, null);
+        }
+    }
+
+    /**
+     * 一个索引的规则，alias 为逻辑上的索引名（表名或 orders），读取时查询该别名
+     */
+    public static final class Rule implements Serializable {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final String alias;
+        private final List<Part> template;
+        private final String routingColumn;
+        private final ZoneId zone;
+        private transient DateTimeFormatter[] formatters;
+
+        Rule(String alias, List<Part> template, String routingColumn, ZoneId zone) {
+            this.alias = alias;
+            this.template = template;
+            this.routingColumn = routingColumn;
+            this.zone = zone;
+        }
+
+        public String alias() {
+            return alias;
+        }
+
+        boolean isDefaultIndex() {
+            return template.size() == 1 && alias.equals(template.get(0).literal());
+        }
+
+        /**
+         * 按表结构找到模板中各列的字段，与 template 一一对应，文字部分为 null
+         */
+        Field[] templateFields(Schema rowSchema) {
+            Field[] fields = new Field[template.size()];
+            for (int i = 0; i < fields.length; i++) {
+                String column = template.get(i).column();
+                if (column != null) {
+                    fields[i] = requireField(rowSchema, column);
+                }
+            }
+            return fields;
+        }
+
+        Field routingField(Schema rowSchema) {
+            return routingColumn == null ? null : requireField(rowSchema, routingColumn);
+        }
+
+        /**
+         * 计算行对应的索引名，没有列占位符时为固定的索引名
+         */
+        String index(Struct row, Field[] templateFields) {
+            if (template.size() == 1) {
+                return template.get(0).literal();
+            }
+            if (formatters == null) {
+                formatters = new DateTimeFormatter[template.size()];
+                for (int i = 0; i < formatters.length; i++) {
+                    String pattern = template.get(i).pattern();
+                    formatters[i] = pattern == null ? null : DateTimeFormatter.ofPattern(pattern, Locale.ROOT);
+                }
+            }
+            StringBuilder index = new StringBuilder(alias.length() + 16);
+            for (int i = 0; i < template.size(); i++) {
+                Part part = template.get(i);
+                if (part.literal() != null) {
+                    index.append(part.literal());
+                    continue;
+                }
+                Object value = row.get(templateFields[i]);
+                if (value == null) {
+                    index.append(NULL_VALUE);
+                } else if (formatters[i] != null) {
+                    index.append(formatters[i].format(toTemporal(templateFields[i].schema(), value)));
+                } else {
+                    index.append(String.valueOf(value).toLowerCase(Locale.ROOT));
+                }
+            }
+            return index.toString();
+        }
+
+        /**
+         * 路由值，未配置路由或列值为 null 时返回 null
+         */
+        String routing(Struct row, Field routingField) {
+            if (routingField == null) {
+                return null;
+            }
+            Object value = row.get(routingField);
+            return value == null ? null : String.valueOf(value);
+        }
+
+        /**
+         * Debezium 的时间类型：DATETIME 为不带时区的本地时间（按 UTC 编码的毫秒 / 微秒 / 纳秒），
+         * TIMESTAMP 为 UTC 时间字符串，转换到 MySQL 服务端时区，DATE 为距 1970-01-01 的天数
+         */
+        private TemporalAccessor toTemporal(Schema schema, Object value) {
+            String logicalName = schema.name();
+            if (logicalName != null) {
+                switch (logicalName) {
+                    case "io.debezium.time.Timestamp":
+                        return LocalDateTime.ofInstant(Instant.ofEpochMilli((Long) value), ZoneOffset.UTC);
+                    case "io.debezium.time.MicroTimestamp":
+                        long micros = (Long) value;
+                        return LocalDateTime.ofInstant(Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                                Math.floorMod(micros, 1_000_000L) * 1000), ZoneOffset.UTC);
+                    case "io.debezium.time.NanoTimestamp":
+                        long nanos = (Long) value;
+                        return LocalDateTime.ofInstant(Instant.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L),
+                                Math.floorMod(nanos, 1_000_000_000L)), ZoneOffset.UTC);
+                    case "io.debezium.time.ZonedTimestamp":
+                        return ZonedDateTime.parse((String) value).withZoneSameInstant(zone);
+                    case "io.debezium.time.Date":
+                        return LocalDate.ofEpochDay((Integer) value);
+                    case "org.apache.kafka.connect.data.Timestamp":
+                        return LocalDateTime.ofInstant(((java.util.Date) value).toInstant(), ZoneOffset.UTC);
+                    default:
+                        break;
+                }
+            }
+            throw new IllegalArgumentException("Column type " + (logicalName != null ? logicalName : schema.type())
+                    + " cannot be formatted as a date in the index name of " + alias);
+        }
+
+        private Field requireField(Schema rowSchema, String column) {
+            Field field = rowSchema.field(column);
+            if (field == null) {
+                throw new IllegalArgumentException("Column " + column + " used by the index name or routing of "
+                        + alias + " not found in schema " + rowSchema.name());
+            }
+            return field;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder name = new StringBuilder();
+            for (Part part : template) {
+                if (part.literal() != null) {
+                    name.append(part.literal());
+                } else {
+                    name.append('{').append(part.column());
+                    if (part.pattern() != null) {
+                        name.append(':').append(part.pattern());
+                    }
+                    name.append('}');
+                }
+            }
+            return alias + "{index=" + name + (routingColumn == null ? "" : ", routing=" + routingColumn) + '}';
+        }
+    }
+}
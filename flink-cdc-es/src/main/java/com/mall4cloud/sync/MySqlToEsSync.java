@@ -1,12 +1,17 @@
 package com.mall4cloud.sync;
 
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.transport.ElasticsearchTransport;
 import org.apache.flink.api.common.eventtime.WatermarkStrategy;
+import org.apache.flink.api.common.typeinfo.Types;
 import org.apache.flink.cdc.connectors.mysql.source.MySqlSource;
+import org.apache.flink.cdc.connectors.mysql.source.MySqlSourceBuilder;
 import org.apache.flink.cdc.connectors.mysql.table.StartupOptions;
 import org.apache.flink.configuration.*;
-import org.apache.flink.core.execution.CheckpointingMode;
 import org.apache.flink.streaming.api.environment.StreamExecutionEnvironment;
+import org.apache.flink.streaming.api.datastream.DataStream;
 import org.apache.flink.streaming.api.datastream.DataStreamSource;
+import org.apache.flink.table.catalog.ObjectPath;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -15,6 +20,11 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
 
 public class MySqlToEsSync {
 
@@ -24,37 +34,95 @@ public class MySqlToEsSync {
 
         initLogDir();
 
+        // 加载作业配置：配置文件 + -D 系统属性 + 命令行参数，启动前校验
+        Configuration config = SyncConfig.load(args);
+        boolean rebuild = config.get(SyncOptions.REBUILD_ENABLED);
+        if (rebuild) {
+            config = IndexRebuilder.rebuildConfiguration(config);
+        }
+
         // 创建Flink执行环境
         Configuration conf = new Configuration();
-        conf.set(RestOptions.BIND_PORT, "8081");
+        conf.set(RestOptions.BIND_PORT, String.valueOf(config.get(SyncOptions.WEB_PORT)));
         conf.set(WebOptions.LOG_PATH, "./logs/flink-job-manager.log");
         conf.set(TaskManagerOptions.TASK_MANAGER_LOG_PATH, "./logs/flink-job-manager.log");
+        // 订单宽表的订单项、地址关联等 keyed state 可能很大，存放在 RocksDB 中并使用增量 checkpoint
+        conf.set(StateBackendOptions.STATE_BACKEND, "rocksdb");
+        conf.set(CheckpointingOptions.INCREMENTAL_CHECKPOINTS, true);
+        conf.set(CheckpointingOptions.CHECKPOINTS_DIRECTORY,
+                Paths.get(config.get(SyncOptions.CHECKPOINT_DIR)).toAbsolutePath().toUri().toString());
+        // 按吞吐缩小网络缓冲区，反压时 barrier 前积压的数据更少
+        conf.set(TaskManagerOptions.BUFFER_DEBLOAT_ENABLED, config.get(SyncOptions.CHECKPOINT_BUFFER_DEBLOAT));
+        conf.set(TaskManagerOptions.BUFFER_DEBLOAT_TARGET, config.get(SyncOptions.CHECKPOINT_BUFFER_DEBLOAT_TARGET));
 
-        try (StreamExecutionEnvironment env = StreamExecutionEnvironment.createLocalEnvironmentWithWebUI(conf)) {
+        try (StreamExecutionEnvironment env = StreamExecutionEnvironment.createLocalEnvironmentWithWebUI(conf);
+             IndexRebuilder rebuilder = rebuild ? new IndexRebuilder(config) : null) {
             // 配置检查点，确保数据一致性和故障恢复
-            env.enableCheckpointing(60000); // 每60秒创建一个检查点
-            env.getCheckpointConfig().setCheckpointingConsistencyMode(CheckpointingMode.EXACTLY_ONCE);
-            env.getCheckpointConfig().setMinPauseBetweenCheckpoints(30000); // 两次检查点之间的最小时间间隔
-            env.getCheckpointConfig().setCheckpointTimeout(60000); // 检查点超时时间
-            env.getCheckpointConfig().setMaxConcurrentCheckpoints(1); // 同时只允许一个检查点
-            env.getCheckpointConfig().setTolerableCheckpointFailureNumber(3); // 允许的检查点失败次数
+            env.enableCheckpointing(config.get(SyncOptions.CHECKPOINT_INTERVAL).toMillis());
+            env.getCheckpointConfig().setCheckpointingConsistencyMode(config.get(SyncOptions.CHECKPOINT_MODE));
+            env.getCheckpointConfig().setMinPauseBetweenCheckpoints(config.get(SyncOptions.CHECKPOINT_MIN_PAUSE).toMillis());
+            env.getCheckpointConfig().setCheckpointTimeout(config.get(SyncOptions.CHECKPOINT_TIMEOUT).toMillis());
+            env.getCheckpointConfig().setMaxConcurrentCheckpoints(config.get(SyncOptions.CHECKPOINT_MAX_CONCURRENT));
+            env.getCheckpointConfig().setTolerableCheckpointFailureNumber(
+                    config.get(SyncOptions.CHECKPOINT_TOLERABLE_FAILURES));
+            // Elasticsearch 变慢造成反压时，对齐超时后切换为非对齐 checkpoint，避免 checkpoint 超时
+            env.getCheckpointConfig().enableUnalignedCheckpoints(config.get(SyncOptions.CHECKPOINT_UNALIGNED));
+            env.getCheckpointConfig().setAlignedCheckpointTimeout(config.get(SyncOptions.CHECKPOINT_ALIGNED_TIMEOUT));
+
+            boolean denormalizeOrders = config.get(SyncOptions.DENORMALIZE_ORDERS);
+            IndexRouting indexRouting = IndexRouting.fromConfiguration(config);
+            log.info("Index routing: {}", indexRouting);
+            if (!rebuild) {
+                checkAliasesAvailable(config, indexRouting);
+            }
 
             // 配置MySQL CDC Source
-            MySqlSource<ChangedData> mySqlSource = buildDataChangeSource();
+            MySqlSource<ChangedData> mySqlSource = buildDataChangeSource(config, denormalizeOrders, indexRouting,
+                    rebuild);
 
             // 添加CDC Source到环境
             DataStreamSource<ChangedData> stream = env.fromSource(mySqlSource,
                     WatermarkStrategy.noWatermarks(), "MySQL CDC Source");
 
-            stream.setParallelism(4);
+            int sourceParallelism = config.get(SyncOptions.SOURCE_PARALLELISM);
+            stream.setParallelism(sourceParallelism);
 
-            // 配置Elasticsearch Sink
-            ElasticsearchSink elasticsearchSink = new ElasticsearchSink();
+            // 与 source 链接在一起，把 binlog 读取线程的队列深度、过滤数量与延迟注册为 Flink 指标
+            DataStream<ChangedData> changes = stream
+                    .map(new BinlogReaderMetricsReporter(config), ChangedDataTypeInfo.INSTANCE)
+                    .name("Binlog Reader Metrics")
+                    .setParallelism(sourceParallelism);
+            if (denormalizeOrders) {
+                changes = buildOrderDocuments(changes, config.get(SyncOptions.ORDERS_PARALLELISM),
+                        indexRouting.rule(OrderDocumentBuilder.ORDER_TABLE) != null,
+                        config.get(SyncOptions.ORDERS_DELETED_TTL));
+            }
 
-            // 添加sink到流
-            stream.sinkTo(elasticsearchSink).setParallelism(4);
+            // 配置Elasticsearch Sink
+            ElasticsearchSink elasticsearchSink = new ElasticsearchSink(config);
+            int sinkParallelism = config.get(SyncOptions.SINK_PARALLELISM);
 
+            // 添加sink到流，默认按 表名 + 主键 分区：同一文档的变更落在同一个 subtask，
+            // 既保证了单文档的写入顺序，也使 sink 缓冲区内的去重生效
+            if (config.get(SyncOptions.SINK_KEY_BY_DOCUMENT)) {
+                changes.keyBy(ChangedData::getDocumentKey, Types.STRING)
+                        .sinkTo(elasticsearchSink).setParallelism(sinkParallelism);
+            } else {
+                changes.sinkTo(elasticsearchSink).setParallelism(sinkParallelism);
+            }
             // 执行任务
+            if (rebuilder != null) {
+                // 全量重建：快照读取完成后作业结束，随后切换别名
+                IndexRebuilder.BinlogPosition position = rebuilder.prepare(config);
+                log.info("Starting Flink job: Rebuild Elasticsearch indices {}", config.get(SyncOptions.REBUILD_INDEX_SUFFIX));
+                env.execute("Rebuild Elasticsearch indices");
+                rebuilder.finish();
+                log.info("Start the incremental sync with --{} {} --{} {} --{} {}",
+                        SyncOptions.MYSQL_STARTUP_MODE.key(), SyncOptions.StartupMode.SPECIFIC_OFFSET,
+                        SyncOptions.MYSQL_STARTUP_BINLOG_FILE.key(), position.file(),
+                        SyncOptions.MYSQL_STARTUP_BINLOG_POSITION.key(), position.position());
+                return;
+            }
             log.info("Starting Flink job: MySQL to Elasticsearch Sync");
             env.execute("MySQL to Elasticsearch Sync");
         } catch (Exception e) {
@@ -63,6 +131,70 @@ public class MySqlToEsSync {
         }
     }
 
+    /**
+     * 把 order、order_addr、order_item 的变更合并为 orders 索引中的订单宽表文档（嵌套订单项与收货地址），
+     * 其它表仍按表名写入各自的索引。关联出的收货地址也经过订单宽表构建，orders 的全部写入都由同一个算子按订单 ID 排序
+     */
+    private static DataStream<ChangedData> buildOrderDocuments(DataStream<ChangedData> stream, int parallelism,
+                                                               boolean placeByOrder, Duration deletedTtl) {
+        // 订单改为引用另一个地址时，先由订单 ID 分区的算子向原地址的分区发送移除
+        DataStream<ChangedData> orderAddrReferences = stream
+                .filter(OrderAddrReferenceTracker::isTracked)
+                .keyBy(OrderDocumentBuilder::orderKey, Types.STRING)
+                .process(new OrderAddrReferenceTracker(), ChangedDataTypeInfo.INSTANCE)
+                .name("Order Address References")
+                .setParallelism(parallelism);
+
+        DataStream<ChangedData> addrDocuments = stream
+                .filter(data -> OrderDocumentBuilder.ORDER_ADDR_TABLE.equals(data.getTable()))
+                .union(orderAddrReferences)
+                .filter(OrderAddrJoinFunction::hasAddrKey)
+                .keyBy(OrderAddrJoinFunction::addrKey, Types.STRING)
+                .process(new OrderAddrJoinFunction(), ChangedDataTypeInfo.INSTANCE)
+                .name("Order Address Join")
+                .setParallelism(parallelism);
+
+        DataStream<ChangedData> orderDocuments = stream
+                .filter(data -> OrderDocumentBuilder.ORDER_TABLE.equals(data.getTable())
+                        || OrderDocumentBuilder.ORDER_ITEM_TABLE.equals(data.getTable()))
+                .union(addrDocuments)
+                .keyBy(OrderDocumentBuilder::orderKey, Types.STRING)
+                .process(new OrderDocumentBuilder(placeByOrder, deletedTtl), ChangedDataTypeInfo.INSTANCE)
+                .name("Order Document Builder")
+                .setParallelism(parallelism);
+
+        return stream
+                .filter(data -> !OrderDocumentBuilder.isOrderTable(data))
+                .union(orderDocuments);
+    }
+
+    /**
+     * 按模板命名的索引通过以表名命名的别名查询。与别名同名的普通索引已存在（启用模板之前写入的数据）时无法添加别名，
+     * sink 第一次写入时失败，作业会反复重启。提交作业前检查并提示迁移方式（见 README 索引命名与路由）
+     */
+    private static void checkAliasesAvailable(Configuration config, IndexRouting indexRouting) throws IOException {
+        Set<String> aliases = indexRouting.renamedAliases();
+        if (aliases.isEmpty()) {
+            return;
+        }
+        List<String> concreteIndices = new ArrayList<>();
+        try (ElasticsearchTransport transport = ElasticsearchSinkWriter.createTransport(config)) {
+            ElasticsearchClient client = new ElasticsearchClient(transport);
+            for (String alias : aliases) {
+                if (client.indices().exists(e -> e.index(alias)).value()
+                        && !client.indices().existsAlias(a -> a.name(alias)).value()) {
+                    concreteIndices.add(alias);
+                }
+            }
+        }
+        if (!concreteIndices.isEmpty()) {
+            throw new IllegalStateException("Indices " + concreteIndices + " are concrete indices, but "
+                    + SyncOptions.INDEX_NAME_PREFIX + "* needs these names as aliases of the templated indices. "
+                    + "Delete them and resync with an empty " + SyncOptions.CHECKPOINT_DIR.key()
+                    + ", or remove the index name templates");
+        }
+    }
+
     private static void initLogDir() throws IOException {
         Path path = Paths.get("./logs");
         if (Files.exists(path) && Files.isDirectory(path)) {
@@ -75,20 +207,75 @@ public class MySqlToEsSync {
         Files.createDirectories(path);
     }
 
-    private static MySqlSource<ChangedData> buildDataChangeSource() {
-        return MySqlSource.<ChangedData>builder()
-                .hostname("127.0.0.1")
-                .port(3306)
-                .databaseList("mall4cloud_order")
-                .tableList("mall4cloud_order.order", "mall4cloud_order.order_addr", "mall4cloud_order.order_item",
-                        "mall4cloud_order.undo_log")
-                .username("cluster")
-                .password("cluster")
-                .deserializer(new MysqlDeserialization())
-                .serverTimeZone("UTC")
-                .serverId("5500-5600") // 使用范围，避免冲突
-                .startupOptions(StartupOptions.initial())
-                .heartbeatInterval(Duration.ofSeconds(30000)) // 添加心跳间隔，保持连接活跃
-                .build();
+    private static MySqlSource<ChangedData> buildDataChangeSource(Configuration config, boolean denormalizeOrders,
+                                                                  IndexRouting indexRouting, boolean rebuild) {
+        String database = config.get(SyncOptions.MYSQL_DATABASE);
+        TableFilters filters = TableFilters.fromConfiguration(config);
+        log.info("Table filters: {}", filters);
+        // 排除的表不加入 source，全量快照与 binlog 读取都直接跳过
+        String[] tables = config.get(SyncOptions.MYSQL_TABLES).stream()
+                .filter(table -> !filters.isExcluded(table))
+                .map(table -> database + "." + table)
+                .toArray(String[]::new);
+        MySqlSourceBuilder<ChangedData> builder = MySqlSource.<ChangedData>builder()
+                .hostname(config.get(SyncOptions.MYSQL_HOSTNAME))
+                .port(config.get(SyncOptions.MYSQL_PORT))
+                .databaseList(database)
+                .tableList(tables)
+                .username(config.get(SyncOptions.MYSQL_USERNAME))
+                .password(config.get(SyncOptions.MYSQL_PASSWORD))
+                // 默认把行数据直接序列化为 JSON 字节，省去中间 Map 与 sink 端的二次序列化；
+                // 构建订单宽表时只有宽表的三张表需要读取列值，使用 Map 模式，其它表不受影响
+                // 更新事件默认只发送变化的列（update + doc_as_upsert）
+                .deserializer(new MysqlDeserialization(
+                        config.get(SyncOptions.DIRECT_JSON),
+                        config.get(SyncOptions.PARTIAL_UPDATE),
+                        filters,
+                        indexRouting,
+                        denormalizeOrders ? OrderDocumentBuilder.ORDER_TABLES : Set.of()))
+                .serverTimeZone(config.get(SyncOptions.MYSQL_SERVER_TIME_ZONE))
+                .serverId(config.get(SyncOptions.MYSQL_SERVER_ID)) // 使用范围，避免冲突
+                .startupOptions(rebuild ? StartupOptions.snapshot() : startupOptions(config))
+                // 重建时各分片不再回填快照期间的 binlog，高水位直接取低水位，
+                // 快照期间的变更由之后从记录的 binlog 位置启动的增量作业补齐
+                .skipSnapshotBackfill(rebuild)
+                .heartbeatInterval(config.get(SyncOptions.MYSQL_HEARTBEAT_INTERVAL)) // 添加心跳间隔，保持连接活跃
+                .splitSize(config.get(SyncOptions.SOURCE_SPLIT_SIZE))
+                .distributionFactorUpper(config.get(SyncOptions.SOURCE_DISTRIBUTION_FACTOR_UPPER))
+                .distributionFactorLower(config.get(SyncOptions.SOURCE_DISTRIBUTION_FACTOR_LOWER));
+        // MySQL 驱动默认把整个结果集读入内存，fetch size 只在游标模式下生效；
+        // fetch size 为 Integer.MIN_VALUE 时驱动逐行流式读取
+        Properties jdbcProperties = new Properties();
+        switch (config.get(SyncOptions.SOURCE_SNAPSHOT_RESULT_SET)) {
+            case STREAMING -> builder.fetchSize(Integer.MIN_VALUE);
+            case CURSOR -> {
+                jdbcProperties.setProperty("useCursorFetch", "true");
+                builder.fetchSize(config.get(SyncOptions.SOURCE_FETCH_SIZE));
+            }
+            case BUFFERED -> builder.fetchSize(config.get(SyncOptions.SOURCE_FETCH_SIZE));
+        }
+        builder.jdbcProperties(jdbcProperties);
+        // binlog 读取线程与过滤线程之间的队列容量与每批大小
+        Properties debeziumProperties = new Properties();
+        debeziumProperties.setProperty("max.queue.size", String.valueOf(config.get(SyncOptions.SOURCE_BINLOG_QUEUE_SIZE)));
+        debeziumProperties.setProperty("max.batch.size", String.valueOf(config.get(SyncOptions.SOURCE_BINLOG_BATCH_SIZE)));
+        debeziumProperties.setProperty("poll.interval.ms",
+                String.valueOf(config.get(SyncOptions.SOURCE_BINLOG_POLL_INTERVAL).toMillis()));
+        builder.debeziumProperties(debeziumProperties);
+        // 主键分布不均匀时可以指定其它有索引的列作为快照分片列
+        for (Map.Entry<String, String> entry : SyncConfig.chunkKeyColumns(config).entrySet()) {
+            builder.chunkKeyColumn(new ObjectPath(database, entry.getKey()), entry.getValue());
+        }
+        return builder.build();
+    }
+
+    private static StartupOptions startupOptions(Configuration config) {
+        return switch (config.get(SyncOptions.MYSQL_STARTUP_MODE)) {
+            case INITIAL -> StartupOptions.initial();
+            case LATEST -> StartupOptions.latest();
+            case SPECIFIC_OFFSET -> StartupOptions.specificOffset(
+                    config.get(SyncOptions.MYSQL_STARTUP_BINLOG_FILE),
+                    config.get(SyncOptions.MYSQL_STARTUP_BINLOG_POSITION));
+        };
     }
 }
@@ -8,21 +8,77 @@ import org.apache.flink.cdc.debezium.DebeziumDeserializationSchema;
 import org.apache.flink.util.Collector;
 
 import java.io.Serial;
+import java.util.Set;
 
 public class MysqlDeserialization implements DebeziumDeserializationSchema<ChangedData> {
 
     @Serial
     private static final long serialVersionUID = 2339470382519089901L;
 
+    // 为 true 时行数据直接序列化为 JSON 字节，sink 原样发送
+    private final boolean directJson;
+
+    // 不受 directJson 影响、始终转换为 Map 的表
+    private final Set<String> mapTables;
+
+    // 为 true 时更新事件只携带变化的列
+    private final boolean partialUpdate;
+
+    // 按表排除、列投影与行过滤规则，在构建任何对象之前作用于 Struct
+    private final TableFilters filters;
+
+    // 按表配置的索引名与路由
+    private final IndexRouting indexRouting;
+
+    // 转换器内部缓存了各表 schema 的字段位置，每个 source 实例复用同一个
+    private transient CdcJsonToChangedDataConverter converter;
+
+    public MysqlDeserialization() {
+        this(false);
+    }
+
+    public MysqlDeserialization(boolean directJson) {
+        this(directJson, false);
+    }
+
+    public MysqlDeserialization(boolean directJson, boolean partialUpdate) {
+        this(directJson, partialUpdate, TableFilters.NONE);
+    }
+
+    public MysqlDeserialization(boolean directJson, boolean partialUpdate, TableFilters filters) {
+        this(directJson, partialUpdate, filters, IndexRouting.NONE);
+    }
+
+    public MysqlDeserialization(boolean directJson, boolean partialUpdate, TableFilters filters,
+                                IndexRouting indexRouting) {
+        this(directJson, partialUpdate, filters, indexRouting, Set.of());
+    }
+
+    public MysqlDeserialization(boolean directJson, boolean partialUpdate, TableFilters filters,
+                                IndexRouting indexRouting, Set<String> mapTables) {
+        this.directJson = directJson;
+        this.mapTables = mapTables;
+        this.partialUpdate = partialUpdate;
+        this.filters = filters;
+        this.indexRouting = indexRouting;
+    }
+
     @Override
     public void deserialize(SourceRecord sourceRecord, Collector<ChangedData> collector) throws Exception {
         Struct struct = (Struct) sourceRecord.value();
-        ChangedData changedData = new CdcJsonToChangedDataConverter().map(struct);
-        collector.collect(changedData);
+        if (converter == null) {
+            converter = new CdcJsonToChangedDataConverter(directJson, partialUpdate, filters, indexRouting,
+                    mapTables);
+        }
+        ChangedData changedData = converter.map(struct);
+        // 被过滤的表和行、以及局部更新模式下没有列变化的更新事件返回 null
+        if (changedData != null) {
+            collector.collect(changedData);
+        }
     }
 
     @Override
     public TypeInformation<ChangedData> getProducedType() {
-        return TypeInformation.of(ChangedData.class);
+        return ChangedDataTypeInfo.INSTANCE;
     }
 }
@@ -0,0 +1,101 @@
+package com.mall4cloud.sync;
+
+import org.apache.flink.api.common.functions.OpenContext;
+import org.apache.flink.api.common.state.MapState;
+import org.apache.flink.api.common.state.MapStateDescriptor;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeinfo.Types;
+import org.apache.flink.streaming.api.functions.KeyedProcessFunction;
+import org.apache.flink.util.Collector;
+
+import java.io.Serial;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 收货地址关联：order_addr 表没有 order_id，只能由订单的 order_addr_id 反查。
+ * 按 order_addr_id 分区，同时接收 order 与 order_addr 的变更：
+ * 记录每个地址被哪些订单引用，地址变化时为这些订单生成 addr 字段的局部文档；新订单引用已有地址时也补写一次。
+ * 订单行先经过 {@link OrderAddrReferenceTracker}，订单改为引用另一个地址时原地址的分区会收到该订单的删除，不再为它生成文档。
+ * 输出再按订单 ID 交给 {@link OrderDocumentBuilder}，由它丢弃已删除订单的地址并补上订单的索引与路由
+ */
+public class OrderAddrJoinFunction extends KeyedProcessFunction<String, ChangedData, ChangedData> {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public static final String ORDER_ADDR_ID = "order_addr_id";
+
+    private static final String ADDR = "addr";
+
+    private transient ValueState<ChangedData> addr;
+    // 引用该地址的订单 ID，值无意义
+    private transient MapState<String, Boolean> orderIds;
+
+    @Override
+    public void open(OpenContext openContext) {
+        addr = getRuntimeContext().getState(new ValueStateDescriptor<>("order-addr", ChangedDataTypeInfo.INSTANCE));
+        orderIds = getRuntimeContext().getMapState(
+                new MapStateDescriptor<>("order-addr-orders", Types.STRING, Types.BOOLEAN));
+    }
+
+    /**
+     * 是否参与地址关联：地址行，以及带有 order_addr_id 的订单行
+     */
+    public static boolean hasAddrKey(ChangedData data) {
+        if (OrderDocumentBuilder.ORDER_ADDR_TABLE.equals(data.getTable())) {
+            return true;
+        }
+        return OrderDocumentBuilder.ORDER_TABLE.equals(data.getTable())
+                && data.getData() != null && data.getData().get(ORDER_ADDR_ID) != null;
+    }
+
+    /**
+     * 分区键：order_addr 取主键，order 取 order_addr_id 列
+     */
+    public static String addrKey(ChangedData data) {
+        if (OrderDocumentBuilder.ORDER_ADDR_TABLE.equals(data.getTable())) {
+            return data.getPrimaryKeyValue();
+        }
+        return String.valueOf(data.getData().get(ORDER_ADDR_ID));
+    }
+
+    @Override
+    public void processElement(ChangedData element, Context ctx, Collector<ChangedData> out) throws Exception {
+        boolean delete = "d".equals(element.getOperation());
+
+        if (OrderDocumentBuilder.ORDER_TABLE.equals(element.getTable())) {
+            String orderId = element.getPrimaryKeyValue();
+            if (delete) {
+                // 订单删除，或 OrderAddrReferenceTracker 发来的移除：订单不再引用该地址
+                orderIds.remove(orderId);
+                return;
+            }
+            ChangedData current = addr.value();
+            if (!orderIds.contains(orderId)) {
+                orderIds.put(orderId, Boolean.TRUE);
+                if (current != null) {
+                    out.collect(toAddrDocument(element, orderId, current.getData()));
+                }
+            }
+            return;
+        }
+
+        if (delete) {
+            // 地址删除时保留订单文档中已有的地址，作为下单时的收货地址快照
+            addr.clear();
+            return;
+        }
+        ChangedData merged = OrderDocumentBuilder.mergeRow(addr.value(), element);
+        addr.update(merged);
+        for (String orderId : orderIds.keys()) {
+            out.collect(toAddrDocument(element, orderId, merged.getData()));
+        }
+    }
+
+    private static ChangedData toAddrDocument(ChangedData source, String orderId, Map<String, Object> addrData) {
+        Map<String, Object> partial = HashMap.newHashMap(1);
+        partial.put(ADDR, addrData);
+        return OrderDocumentBuilder.toOrderDocument(source, orderId, "u", partial);
+    }
+}
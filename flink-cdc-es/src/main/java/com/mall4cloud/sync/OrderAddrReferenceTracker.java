@@ -0,0 +1,86 @@
+package com.mall4cloud.sync;
+
+import org.apache.flink.api.common.functions.OpenContext;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeinfo.Types;
+import org.apache.flink.streaming.api.functions.KeyedProcessFunction;
+import org.apache.flink.util.Collector;
+
+import java.io.Serial;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 订单引用的收货地址：按订单 ID 分区，记录订单当前的 order_addr_id，位于 {@link OrderAddrJoinFunction} 之前。
+ * 订单改为引用另一个地址、order_addr_id 被置为 null 或订单删除时，向原地址的分区发送一条订单删除，
+ * 由 OrderAddrJoinFunction 把订单从原地址的引用中移除，原地址之后的变更不再覆盖该订单的 addr 字段。
+ * <p>
+ * 订单的删除总是发往记录下的地址：被行过滤转换而来的删除带的是更新后的行，其中的 order_addr_id 可能已经改变
+ */
+public class OrderAddrReferenceTracker extends KeyedProcessFunction<String, ChangedData, ChangedData> {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    // 订单当前引用的 order_addr_id
+    private transient ValueState<String> addrKey;
+
+    @Override
+    public void open(OpenContext openContext) {
+        addrKey = getRuntimeContext().getState(new ValueStateDescriptor<>("order-addr-key", Types.STRING));
+    }
+
+    /**
+     * 是否需要跟踪：订单删除，以及带有 order_addr_id 列的订单行（局部更新只有该列变化时才带有）
+     */
+    public static boolean isTracked(ChangedData data) {
+        if (!OrderDocumentBuilder.ORDER_TABLE.equals(data.getTable())) {
+            return false;
+        }
+        return "d".equals(data.getOperation())
+                || data.getData() != null && data.getData().containsKey(OrderAddrJoinFunction.ORDER_ADDR_ID);
+    }
+
+    @Override
+    public void processElement(ChangedData element, Context ctx, Collector<ChangedData> out) throws Exception {
+        String previous = addrKey.value();
+
+        if ("d".equals(element.getOperation())) {
+            addrKey.clear();
+            if (previous != null) {
+                out.collect(removal(element, previous));
+            } else if (OrderAddrJoinFunction.hasAddrKey(element)) {
+                // 没有记录时（如从添加该算子之前的状态恢复）按删除的行本身的地址移除
+                out.collect(element);
+            }
+            return;
+        }
+
+        String current = OrderAddrJoinFunction.hasAddrKey(element) ? OrderAddrJoinFunction.addrKey(element) : null;
+        if (previous != null && !previous.equals(current)) {
+            out.collect(removal(element, previous));
+        }
+        if (current == null) {
+            addrKey.clear();
+            return;
+        }
+        if (!current.equals(previous)) {
+            addrKey.update(current);
+        }
+        out.collect(element);
+    }
+
+    /**
+     * 发往原地址分区的订单删除，只带 order_addr_id
+     */
+    private static ChangedData removal(ChangedData source, String addrKey) {
+        Map<String, Object> data = HashMap.newHashMap(1);
+        data.put(OrderAddrJoinFunction.ORDER_ADDR_ID, addrKey);
+        ChangedData removal = new ChangedData("d", source.getDatabase(), source.getTable(),
+                source.getPrimaryKeyName(), source.getPrimaryKeyValue(), data);
+        removal.setBinlogFile(source.getBinlogFile());
+        removal.setBinlogPosition(source.getBinlogPosition());
+        removal.setSourceTimestamp(source.getSourceTimestamp());
+        return removal;
+    }
+}
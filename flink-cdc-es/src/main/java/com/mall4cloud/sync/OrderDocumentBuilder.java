@@ -0,0 +1,235 @@
+package com.mall4cloud.sync;
+
+import org.apache.flink.api.common.functions.OpenContext;
+import org.apache.flink.api.common.state.MapState;
+import org.apache.flink.api.common.state.MapStateDescriptor;
+import org.apache.flink.api.common.state.StateTtlConfig;
+import org.apache.flink.api.common.state.ValueState;
+import org.apache.flink.api.common.state.ValueStateDescriptor;
+import org.apache.flink.api.common.typeinfo.Types;
+import org.apache.flink.streaming.api.functions.KeyedProcessFunction;
+import org.apache.flink.util.Collector;
+
+import java.io.Serial;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 订单宽表构建：按 order_id 分区，把 order 与 order_item 的变更合并为 orders 索引中同一个文档的局部更新。
+ * <ul>
+ *     <li>order 行：订单字段（局部更新时只有变化的列）直接作为局部文档写入</li>
+ *     <li>order_item 行：订单项保存在 MapState（RocksDB）中，每次变更重新生成完整的 items 数组</li>
+ *     <li>order 删除：删除整个文档并清空订单项状态，同时记录删除标记，之后迟到的订单项与收货地址变更直接丢弃。
+ *     删除标记在 sync.orders.deleted-ttl 之后过期，避免每个删除过或被过滤的订单都永久占用状态</li>
+ *     <li>收货地址：order_addr 表没有 order_id，由 {@link OrderAddrJoinFunction} 按 order_addr_id 关联出 addr 字段后
+ *     再发给本算子，与订单删除在同一个分区内排序</li>
+ * </ul>
+ * 各部分都以 update + doc_as_upsert 写入，订单删除之前的到达顺序不影响最终结果；删除之后不再产生写入，
+ * 不会以局部字段重新创建已删除的订单。
+ * 配置了 es.index.name.orders 或 es.index.routing.orders 时，文档的索引与路由由 order 行决定，
+ * 订单项与收货地址沿用状态中保存的订单的索引与路由；订单行到达之前的变更暂不写入，订单行到达时与订单字段一起写入
+ */
+public class OrderDocumentBuilder extends KeyedProcessFunction<String, ChangedData, ChangedData> {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public static final String ORDERS_INDEX = "orders";
+    public static final String ORDER_TABLE = "order";
+    public static final String ORDER_ADDR_TABLE = "order_addr";
+    public static final String ORDER_ITEM_TABLE = "order_item";
+    public static final String ORDER_ID = "order_id";
+    // 宽表关心的三张表，反序列化时需要保留列值（Map 模式）
+    public static final Set<String> ORDER_TABLES = Set.of(ORDER_TABLE, ORDER_ADDR_TABLE, ORDER_ITEM_TABLE);
+
+    private static final String ITEMS = "items";
+
+    // 订单项与收货地址是否需要沿用订单行的索引与路由
+    private final boolean placeByOrder;
+    // 删除标记的保留时长
+    private final Duration deletedTtl;
+
+    // order_item_id -> 订单项行数据
+    private transient MapState<String, ChangedData> items;
+    // 订单文档的索引与路由，见 placementOf
+    private transient ValueState<ChangedData> placement;
+    // 订单行到达之前关联出的收货地址，仅 placeByOrder 时使用
+    private transient ValueState<ChangedData> pendingAddr;
+    // 订单已删除，不随订单项一起清除，过期后自动清除
+    private transient ValueState<Boolean> deleted;
+
+    public OrderDocumentBuilder(boolean placeByOrder, Duration deletedTtl) {
+        this.placeByOrder = placeByOrder;
+        this.deletedTtl = deletedTtl;
+    }
+
+    @Override
+    public void open(OpenContext openContext) {
+        items = getRuntimeContext().getMapState(
+                new MapStateDescriptor<>("order-items", Types.STRING, ChangedDataTypeInfo.INSTANCE));
+        placement = getRuntimeContext().getState(
+                new ValueStateDescriptor<>("order-placement", ChangedDataTypeInfo.INSTANCE));
+        pendingAddr = getRuntimeContext().getState(
+                new ValueStateDescriptor<>("order-pending-addr", ChangedDataTypeInfo.INSTANCE));
+        // 过滤掉的订单每次变更都会重新写入删除标记并重新计时；过期的标记读取时视为不存在，由后台清理
+        ValueStateDescriptor<Boolean> deletedDescriptor = new ValueStateDescriptor<>("order-deleted", Types.BOOLEAN);
+        deletedDescriptor.enableTimeToLive(StateTtlConfig.newBuilder(deletedTtl)
+                .setUpdateType(StateTtlConfig.UpdateType.OnCreateAndWrite)
+                .setStateVisibility(StateTtlConfig.StateVisibility.NeverReturnExpired)
+                .build());
+        deleted = getRuntimeContext().getState(deletedDescriptor);
+    }
+
+    /**
+     * 宽表关心的三张表
+     */
+    public static boolean isOrderTable(ChangedData data) {
+        return ORDER_TABLE.equals(data.getTable())
+                || ORDER_ADDR_TABLE.equals(data.getTable())
+                || ORDER_ITEM_TABLE.equals(data.getTable());
+    }
+
+    /**
+     * 分区键：order 与关联出的收货地址取主键（订单 ID），order_item 取 order_id 列
+     */
+    public static String orderKey(ChangedData data) {
+        if (ORDER_TABLE.equals(data.getTable()) || ORDERS_INDEX.equals(data.getTable())) {
+            return data.getPrimaryKeyValue();
+        }
+        return String.valueOf(data.getData().get(ORDER_ID));
+    }
+
+    @Override
+    public void processElement(ChangedData element, Context ctx, Collector<ChangedData> out) throws Exception {
+        String orderId = ctx.getCurrentKey();
+        boolean delete = "d".equals(element.getOperation());
+
+        if (ORDERS_INDEX.equals(element.getTable())) {
+            // OrderAddrJoinFunction 关联出的收货地址
+            if (deleted.value() != null) {
+                return;
+            }
+            if (placeByOrder) {
+                ChangedData order = placement.value();
+                if (order == null) {
+                    pendingAddr.update(element);
+                    return;
+                }
+                applyPlacement(element, order);
+            }
+            out.collect(element);
+            return;
+        }
+
+        if (ORDER_TABLE.equals(element.getTable())) {
+            if (delete) {
+                items.clear();
+                placement.clear();
+                pendingAddr.clear();
+                deleted.update(Boolean.TRUE);
+                out.collect(toOrderDocument(element, orderId, "d", null));
+                return;
+            }
+            if (deleted.value() != null) {
+                // 同一订单 ID 重新出现，如被过滤的订单重新满足过滤条件
+                deleted.clear();
+            }
+            out.collect(toOrderDocument(element, orderId, "u", element.getData()));
+            if (placeByOrder && placement.value() == null) {
+                ChangedData order = placementOf(element, orderId);
+                placement.update(order);
+                // 补写订单行到达之前暂存的订单项与收货地址
+                if (!items.isEmpty()) {
+                    out.collect(toOrderDocument(element, orderId, "u", itemsDocument()));
+                }
+                ChangedData addr = pendingAddr.value();
+                if (addr != null) {
+                    pendingAddr.clear();
+                    applyPlacement(addr, order);
+                    out.collect(addr);
+                }
+            }
+            return;
+        }
+
+        if (deleted.value() != null) {
+            // 订单已删除，迟到的订单项变更不能再以 doc_as_upsert 创建只有 items 的文档
+            return;
+        }
+        if (delete) {
+            items.remove(element.getPrimaryKeyValue());
+        } else {
+            items.put(element.getPrimaryKeyValue(), mergeRow(items.get(element.getPrimaryKeyValue()), element));
+        }
+        ChangedData document = toOrderDocument(element, orderId, "u", itemsDocument());
+        if (placeByOrder) {
+            ChangedData order = placement.value();
+            if (order == null) {
+                return;
+            }
+            applyPlacement(document, order);
+        }
+        out.collect(document);
+    }
+
+    private Map<String, Object> itemsDocument() throws Exception {
+        List<Object> itemList = new ArrayList<>();
+        for (ChangedData item : items.values()) {
+            itemList.add(item.getData());
+        }
+        Map<String, Object> partial = HashMap.newHashMap(1);
+        partial.put(ITEMS, itemList);
+        return partial;
+    }
+
+    /**
+     * 订单文档的索引与路由，由 order 行在反序列化阶段计算。只保存文档头，没有数据；索引为默认索引时 index 为 null
+     */
+    static ChangedData placementOf(ChangedData order, String orderId) {
+        return toOrderDocument(order, orderId, "u", null);
+    }
+
+    static void applyPlacement(ChangedData document, ChangedData placement) {
+        document.setIndex(placement.getIndex());
+        document.setRouting(placement.getRouting());
+    }
+
+    /**
+     * 局部更新的行只包含变化的列，与状态中保存的完整行合并；没有已保存的行时按原样保存
+     */
+    static ChangedData mergeRow(ChangedData stored, ChangedData change) {
+        if (!change.isPartialUpdate() || stored == null) {
+            return change;
+        }
+        Map<String, Object> merged = HashMap.newHashMap(stored.getData().size());
+        merged.putAll(stored.getData());
+        merged.putAll(change.getData());
+        ChangedData row = new ChangedData(change.getOperation(), change.getDatabase(), change.getTable(),
+                change.getPrimaryKeyName(), change.getPrimaryKeyValue(), merged);
+        row.setBinlogFile(change.getBinlogFile());
+        row.setBinlogPosition(change.getBinlogPosition());
+        row.setVersion(change.getVersion());
+        row.setSourceTimestamp(change.getSourceTimestamp());
+        return row;
+    }
+
+    /**
+     * 生成 orders 索引的一次写入：data 为局部文档，删除时为 null。binlog 位置沿用源变更，便于排查，提交时间用于统计延迟，
+     * 索引与路由也沿用源变更，订单项与收货地址的变更需要再由 applyPlacement 替换为订单的索引与路由
+     */
+    static ChangedData toOrderDocument(ChangedData source, String orderId, String operation,
+                                       Map<String, Object> partial) {
+        ChangedData document = new ChangedData(operation, source.getDatabase(), ORDERS_INDEX, ORDER_ID, orderId,
+                partial);
+        document.setBinlogFile(source.getBinlogFile());
+        document.setBinlogPosition(source.getBinlogPosition());
+        document.setSourceTimestamp(source.getSourceTimestamp());
+        document.setPartialUpdate(partial != null);
+        document.setIndex(source.getIndex());
+        document.setRouting(source.getRouting());
+        return document;
+    }
+}
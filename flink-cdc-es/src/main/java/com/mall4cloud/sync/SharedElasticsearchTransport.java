@@ -0,0 +1,184 @@
+package com.mall4cloud.sync;
+
+import co.elastic.clients.transport.ElasticsearchTransport;
+import org.apache.flink.configuration.ConfigOption;
+import org.apache.flink.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 同一个 JVM（TaskManager）中连接配置相同的 sink writer 共用一个 transport，即共用连接池、SSL 上下文与节点发现，
+ * 只有第一个 writer 需要建立连接并测试连通性，扩大并行度时 Elasticsearch 上的连接数也不会成倍增长。
+ * 全局锁只保护登记表，建立连接在锁外进行，一个集群不可达时不会阻塞其它配置的 writer 释放或获取 transport。
+ * <p>
+ * 按引用计数管理：最后一个 writer 释放后再保留 es.client.idle-timeout，任务失败重启时新的 writer 可以直接复用已建立的连接
+ */
+final class SharedElasticsearchTransport {
+    private static final Logger LOG = LoggerFactory.getLogger(SharedElasticsearchTransport.class);
+
+    /**
+     * 决定能否共用 transport 的配置项，任一项不同时各自创建
+     */
+    private static final List<ConfigOption<?>> CONNECTION_OPTIONS = List.of(
+            SyncOptions.ES_HOSTS,
+            SyncOptions.ES_USERNAME,
+            SyncOptions.ES_PASSWORD,
+            SyncOptions.ES_CONNECTION_TIMEOUT,
+            SyncOptions.ES_SOCKET_TIMEOUT,
+            SyncOptions.ES_SNIFF_ENABLED,
+            SyncOptions.ES_SNIFF_INTERVAL,
+            SyncOptions.ES_SNIFF_AFTER_FAILURE_DELAY,
+            SyncOptions.ES_NODE_SELECTOR,
+            SyncOptions.ES_MAX_CONNECTIONS_PER_ROUTE,
+            SyncOptions.ES_MAX_CONNECTIONS_TOTAL,
+            SyncOptions.ES_CONNECTION_KEEP_ALIVE,
+            SyncOptions.SINK_PARALLELISM,
+            SyncOptions.BULK_MAX_IN_FLIGHT_REQUESTS);
+
+    // 访问时对 SHARED 加锁，锁内不做网络请求
+    private static final Map<List<Object>, SharedTransport> SHARED = new HashMap<>();
+
+    private SharedElasticsearchTransport() {
+    }
+
+    /**
+     * 获取与配置对应的共享 transport，没有时创建。用完后必须关闭返回的 Lease。
+     * 建立连接与测试连通性在锁外进行，同时启动的相同配置的 writer 等待同一个创建结果，其它配置的 writer 不受影响
+     */
+    static Lease acquire(Configuration config) {
+        List<Object> key = connectionKey(config);
+        Duration idleTimeout = config.get(SyncOptions.ES_CLIENT_IDLE_TIMEOUT);
+        SharedTransport shared;
+        boolean create = false;
+        synchronized (SHARED) {
+            shared = SHARED.get(key);
+            if (shared == null) {
+                shared = new SharedTransport(key, idleTimeout);
+                SHARED.put(key, shared);
+                create = true;
+            }
+            shared.references++;
+            // 使等待中的延迟关闭失效
+            shared.generation++;
+        }
+        if (create) {
+            try {
+                shared.transport.complete(ElasticsearchSinkWriter.createTransport(config));
+                LOG.info("Created shared Elasticsearch transport for {}", config.get(SyncOptions.ES_HOSTS));
+            } catch (RuntimeException e) {
+                // 创建失败时移除，下一个 writer 重新创建
+                synchronized (SHARED) {
+                    SHARED.remove(key, shared);
+                }
+                shared.transport.completeExceptionally(e);
+            }
+        }
+        try {
+            ElasticsearchTransport transport = shared.transport.join();
+            LOG.debug("Acquired shared Elasticsearch transport, {} writers are using it", shared.references);
+            return new Lease(shared, transport);
+        } catch (CompletionException e) {
+            synchronized (SHARED) {
+                shared.references--;
+            }
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private static List<Object> connectionKey(Configuration config) {
+        List<Object> key = new ArrayList<>(CONNECTION_OPTIONS.size());
+        for (ConfigOption<?> option : CONNECTION_OPTIONS) {
+            key.add(config.getOptional(option).orElse(null));
+        }
+        return key;
+    }
+
+    private static void release(SharedTransport shared) {
+        long generation;
+        synchronized (SHARED) {
+            if (--shared.references > 0) {
+                LOG.debug("Released shared Elasticsearch transport, {} writers are still using it", shared.references);
+                return;
+            }
+            if (shared.idleTimeout.isZero()) {
+                SHARED.remove(shared.key);
+                close(shared);
+                return;
+            }
+            generation = ++shared.generation;
+        }
+        CompletableFuture.delayedExecutor(shared.idleTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .execute(() -> closeIfIdle(shared, generation));
+    }
+
+    private static void closeIfIdle(SharedTransport shared, long generation) {
+        synchronized (SHARED) {
+            // 期间有新的 writer 获取过，或已被关闭
+            if (shared.references > 0 || shared.generation != generation || SHARED.get(shared.key) != shared) {
+                return;
+            }
+            SHARED.remove(shared.key);
+        }
+        close(shared);
+    }
+
+    private static void close(SharedTransport shared) {
+        try {
+            // 只有创建成功、被 writer 使用过的 transport 才会走到这里
+            shared.transport.join().close();
+            LOG.info("Closed shared Elasticsearch transport");
+        } catch (IOException e) {
+            LOG.warn("Failed to close shared Elasticsearch transport", e);
+        }
+    }
+
+    private static final class SharedTransport {
+        private final List<Object> key;
+        // 由第一个 writer 在锁外创建，其它 writer 等待结果
+        private final CompletableFuture<ElasticsearchTransport> transport = new CompletableFuture<>();
+        private final Duration idleTimeout;
+        private int references;
+        private long generation;
+
+        private SharedTransport(List<Object> key, Duration idleTimeout) {
+            this.key = key;
+            this.idleTimeout = idleTimeout;
+        }
+    }
+
+    /**
+     * 一个 writer 对共享 transport 的引用，重复关闭无影响
+     */
+    static final class Lease implements AutoCloseable {
+        private final SharedTransport shared;
+        private final ElasticsearchTransport transport;
+        private boolean released;
+
+        private Lease(SharedTransport shared, ElasticsearchTransport transport) {
+            this.shared = shared;
+            this.transport = transport;
+        }
+
+        ElasticsearchTransport transport() {
+            return transport;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!released) {
+                released = true;
+                release(shared);
+            }
+        }
+    }
+}
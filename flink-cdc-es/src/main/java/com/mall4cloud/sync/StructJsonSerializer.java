@@ -0,0 +1,117 @@
+package com.mall4cloud.sync;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import org.apache.flink.cdc.connectors.shaded.org.apache.kafka.connect.data.Field;
+import org.apache.flink.cdc.connectors.shaded.org.apache.kafka.connect.data.Struct;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+/**
+ * 将 Debezium 行数据 Struct 直接序列化为 Elasticsearch 文档 JSON，不再经过中间的 Map。
+ * 输出写入一个可复用的缓冲区，每个文档只拷贝一次得到最终的 byte[]，由 sink 原样放入 bulk 请求体。
+ * <p>
+ * 输出与 Map 模式经 sink 的 JacksonJsonpMapper 序列化的结果一致：值为 null 的字段省略，
+ * Debezium 的时间类型按原始数值写出（Date 为天数，MicroTimestamp / NanoTimestamp 为微秒 / 纳秒），
+ * 切换 sync.direct-json 不改变写入的文档。
+ * <p>
+ * 非线程安全，每个转换器实例持有一个
+ */
+public class StructJsonSerializer {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+
+    /**
+     * 一个表结构对应的字段与预先编码好的字段名
+     */
+    static final class Layout {
+        private final Field[] fields;
+        private final SerializedString[] names;
+
+        Layout(Field[] fields) {
+            this.fields = fields;
+            this.names = new SerializedString[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                names[i] = new SerializedString(fields[i].name());
+            }
+        }
+    }
+
+    /**
+     * 序列化一行数据
+     */
+    public byte[] serialize(Struct row, Layout layout) throws IOException {
+        buffer.reset();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(buffer)) {
+            generator.writeStartObject();
+            for (int i = 0; i < layout.fields.length; i++) {
+                writeField(generator, layout.names[i], row.get(layout.fields[i]));
+            }
+            generator.writeEndObject();
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * 只序列化指定下标的字段，用于局部更新
+     */
+    public byte[] serialize(Struct row, Layout layout, int[] fieldIndexes) throws IOException {
+        buffer.reset();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(buffer)) {
+            generator.writeStartObject();
+            for (int i : fieldIndexes) {
+                writeField(generator, layout.names[i], row.get(layout.fields[i]));
+            }
+            generator.writeEndObject();
+        }
+        return buffer.toByteArray();
+    }
+
+    private static void writeField(JsonGenerator generator, SerializedString name, Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        generator.writeFieldName(name);
+        writeValue(generator, value);
+    }
+
+    private static void writeValue(JsonGenerator generator, Object value) throws IOException {
+        if (value instanceof String text) {
+            generator.writeString(text);
+        } else if (value instanceof Long number) {
+            generator.writeNumber(number);
+        } else if (value instanceof Integer number) {
+            generator.writeNumber(number);
+        } else if (value instanceof Short number) {
+            generator.writeNumber(number);
+        } else if (value instanceof Byte number) {
+            generator.writeNumber(number);
+        } else if (value instanceof BigDecimal number) {
+            generator.writeNumber(number);
+        } else if (value instanceof Double number) {
+            generator.writeNumber(number);
+        } else if (value instanceof Float number) {
+            generator.writeNumber(number);
+        } else if (value instanceof Boolean bool) {
+            generator.writeBoolean(bool);
+        } else if (value instanceof byte[] bytes) {
+            generator.writeBinary(bytes);
+        } else if (value instanceof ByteBuffer byteBuffer) {
+            byte[] bytes = new byte[byteBuffer.remaining()];
+            byteBuffer.duplicate().get(bytes);
+            generator.writeBinary(bytes);
+        } else if (value instanceof Date date) {
+            // org.apache.kafka.connect.data.Timestamp 等 Connect 内置逻辑类型，与 Jackson 一样写出毫秒时间戳
+            generator.writeNumber(date.getTime());
+        } else {
+            generator.writeString(value.toString());
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.mall4cloud.sync;
+
+import org.apache.flink.api.java.utils.ParameterTool;
+import org.apache.flink.configuration.Configuration;
+import org.apache.flink.core.execution.CheckpointingMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 加载并校验同步作业的配置，优先级从低到高：
+ * <ol>
+ *     <li>{@link SyncOptions} 中的默认值</li>
+ *     <li>配置文件：--config 或 -Dsync.config 指定的路径，未指定时使用 classpath 下的 sync.properties（如果存在）</li>
+ *     <li>-D 系统属性（仅 mysql. / source. / sync. / es. / checkpoint. / web. 开头的键）</li>
+ *     <li>命令行参数 --key value</li>
+ * </ol>
+ * 校验失败时一次性列出所有错误并拒绝启动
+ */
+public final class SyncConfig {
+    private static final Logger LOG = LoggerFactory.getLogger(SyncConfig.class);
+
+    private static final String CONFIG_FILE_ARG = "config";
+    private static final String CONFIG_FILE_PROPERTY = "sync.config";
+    private static final String DEFAULT_CONFIG_RESOURCE = "sync.properties";
+    private static final List<String> SYSTEM_PROPERTY_PREFIXES =
+            List.of("mysql.", "source.", "sync.", "es.", "checkpoint.", "web.");
+
+    private SyncConfig() {
+    }
+
+    public static Configuration load(String[] args) throws IOException {
+        ParameterTool cli = ParameterTool.fromArgs(args);
+
+        Map<String, String> values = new HashMap<>(loadConfigFile(
+                cli.get(CONFIG_FILE_ARG, System.getProperty(CONFIG_FILE_PROPERTY))));
+        ParameterTool.fromSystemProperties().toMap().forEach((key, value) -> {
+            if (SYSTEM_PROPERTY_PREFIXES.stream().anyMatch(key::startsWith) && !CONFIG_FILE_PROPERTY.equals(key)) {
+                values.put(key, value);
+            }
+        });
+        cli.toMap().forEach((key, value) -> {
+            if (!CONFIG_FILE_ARG.equals(key)) {
+                values.put(key, value);
+            }
+        });
+
+        Configuration config = Configuration.fromMap(values);
+        validate(config);
+        return config;
+    }
+
+    private static Map<String, String> loadConfigFile(String file) throws IOException {
+        if (file != null) {
+            Path path = Paths.get(file);
+            if (!Files.isRegularFile(path)) {
+                throw new IllegalArgumentException("Config file not found: " + path.toAbsolutePath());
+            }
+            LOG.info("Loading sync config from {}", path.toAbsolutePath());
+            return ParameterTool.fromPropertiesFile(path.toFile()).toMap();
+        }
+        try (InputStream in = SyncConfig.class.getClassLoader().getResourceAsStream(DEFAULT_CONFIG_RESOURCE)) {
+            if (in == null) {
+                LOG.info("No sync config file given, using defaults and overrides");
+                return Map.of();
+            }
+            LOG.info("Loading sync config from classpath resource {}", DEFAULT_CONFIG_RESOURCE);
+            return ParameterTool.fromPropertiesFile(in).toMap();
+        }
+    }
+
+    /**
+     * 打开到 MySQL 的 JDBC 连接，用于读取 binlog 位置等元数据，与 CDC source 使用相同的账号
+     */
+    public static Connection openMysqlConnection(Configuration config) throws SQLException {
+        String url = "jdbc:mysql://" + config.get(SyncOptions.MYSQL_HOSTNAME) + ':' + config.get(SyncOptions.MYSQL_PORT)
+                + "/?useSSL=false&allowPublicKeyRetrieval=true";
+        return DriverManager.getConnection(url, config.get(SyncOptions.MYSQL_USERNAME), config.get(SyncOptions.MYSQL_PASSWORD));
+    }
+
+    /**
+     * 解析 source.chunk-key-columns，返回 表名 -> 分片列
+     */
+    public static Map<String, String> chunkKeyColumns(Configuration config) {
+        Map<String, String> columns = new LinkedHashMap<>();
+        for (String entry : config.getOptional(SyncOptions.SOURCE_CHUNK_KEY_COLUMNS).orElse(List.of())) {
+            int colon = entry.indexOf(':');
+            if (colon <= 0 || colon == entry.length() - 1) {
+                throw new IllegalArgumentException("Invalid " + SyncOptions.SOURCE_CHUNK_KEY_COLUMNS.key()
+                        + " entry: " + entry + ", expected table:column");
+            }
+            columns.put(entry.substring(0, colon).trim(), entry.substring(colon + 1).trim());
+        }
+        return columns;
+    }
+
+    static void validate(Configuration config) {
+        List<String> errors = new ArrayList<>();
+        try {
+            checkRange(errors, SyncOptions.MYSQL_PORT.key(), config.get(SyncOptions.MYSQL_PORT), 1, 65535);
+            if (config.get(SyncOptions.MYSQL_TABLES).isEmpty()) {
+                errors.add(SyncOptions.MYSQL_TABLES.key() + " must not be empty");
+            }
+            checkServerIds(errors, config.get(SyncOptions.MYSQL_SERVER_ID), config.get(SyncOptions.SOURCE_PARALLELISM));
+            if (config.get(SyncOptions.MYSQL_STARTUP_MODE) == SyncOptions.StartupMode.SPECIFIC_OFFSET
+                    && config.getOptional(SyncOptions.MYSQL_STARTUP_BINLOG_FILE).isEmpty()) {
+                errors.add(SyncOptions.MYSQL_STARTUP_BINLOG_FILE.key() + " is required when "
+                        + SyncOptions.MYSQL_STARTUP_MODE.key() + " is SPECIFIC_OFFSET");
+            }
+            checkPositive(errors, SyncOptions.MYSQL_HEARTBEAT_INTERVAL.key(), config.get(SyncOptions.MYSQL_HEARTBEAT_INTERVAL));
+            checkRange(errors, SyncOptions.SOURCE_SPLIT_SIZE.key(), config.get(SyncOptions.SOURCE_SPLIT_SIZE), 1, Integer.MAX_VALUE);
+            checkRange(errors, SyncOptions.SOURCE_FETCH_SIZE.key(), config.get(SyncOptions.SOURCE_FETCH_SIZE), 1, Integer.MAX_VALUE);
+            try {
+                Map<String, String> chunkKeys = chunkKeyColumns(config);
+                for (String table : chunkKeys.keySet()) {
+                    if (!config.get(SyncOptions.MYSQL_TABLES).contains(table)) {
+                        errors.add(SyncOptions.SOURCE_CHUNK_KEY_COLUMNS.key() + " refers to unknown table " + table);
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                errors.add(e.getMessage());
+            }
+            checkRange(errors, SyncOptions.SOURCE_BINLOG_BATCH_SIZE.key(),
+                    config.get(SyncOptions.SOURCE_BINLOG_BATCH_SIZE), 1, Integer.MAX_VALUE);
+            if (config.get(SyncOptions.SOURCE_BINLOG_QUEUE_SIZE) <= config.get(SyncOptions.SOURCE_BINLOG_BATCH_SIZE)) {
+                errors.add(SyncOptions.SOURCE_BINLOG_QUEUE_SIZE.key() + " must be greater than "
+                        + SyncOptions.SOURCE_BINLOG_BATCH_SIZE.key());
+            }
+            checkPositive(errors, SyncOptions.SOURCE_BINLOG_POLL_INTERVAL.key(), config.get(SyncOptions.SOURCE_BINLOG_POLL_INTERVAL));
+            checkPositive(errors, SyncOptions.SOURCE_METRICS_LAG_INTERVAL.key(), config.get(SyncOptions.SOURCE_METRICS_LAG_INTERVAL));
+            if (config.get(SyncOptions.SOURCE_DISTRIBUTION_FACTOR_UPPER) < 1.0d) {
+                errors.add(SyncOptions.SOURCE_DISTRIBUTION_FACTOR_UPPER.key() + " must not be less than 1.0");
+            }
+            double lower = config.get(SyncOptions.SOURCE_DISTRIBUTION_FACTOR_LOWER);
+            if (lower < 0.0d || lower > 1.0d) {
+                errors.add(SyncOptions.SOURCE_DISTRIBUTION_FACTOR_LOWER.key() + " must be between 0.0 and 1.0, got " + lower);
+            }
+            checkRange(errors, SyncOptions.SOURCE_PARALLELISM.key(), config.get(SyncOptions.SOURCE_PARALLELISM), 1, 1024);
+            checkRange(errors, SyncOptions.ORDERS_PARALLELISM.key(), config.get(SyncOptions.ORDERS_PARALLELISM), 1, 1024);
+            checkPositive(errors, SyncOptions.ORDERS_DELETED_TTL.key(), config.get(SyncOptions.ORDERS_DELETED_TTL));
+            checkRange(errors, SyncOptions.SINK_PARALLELISM.key(), config.get(SyncOptions.SINK_PARALLELISM), 1, 1024);
+
+            List<String> hosts = config.get(SyncOptions.ES_HOSTS);
+            if (hosts.isEmpty()) {
+                errors.add(SyncOptions.ES_HOSTS.key() + " must not be empty");
+            }
+            for (String host : hosts) {
+                if (!host.matches("https?://[^/\\s]+/?")) {
+                    errors.add(SyncOptions.ES_HOSTS.key() + " must contain URLs like https://host:9200, got " + host);
+                }
+            }
+            if (config.get(SyncOptions.ES_SNIFF_ENABLED)) {
+                checkPositive(errors, SyncOptions.ES_SNIFF_INTERVAL.key(), config.get(SyncOptions.ES_SNIFF_INTERVAL));
+                checkPositive(errors, SyncOptions.ES_SNIFF_AFTER_FAILURE_DELAY.key(),
+                        config.get(SyncOptions.ES_SNIFF_AFTER_FAILURE_DELAY));
+            }
+            config.getOptional(SyncOptions.ES_MAX_CONNECTIONS_PER_ROUTE).ifPresent(value ->
+                    checkRange(errors, SyncOptions.ES_MAX_CONNECTIONS_PER_ROUTE.key(), value, 1, 1024));
+            config.getOptional(SyncOptions.ES_MAX_CONNECTIONS_TOTAL).ifPresent(value ->
+                    checkRange(errors, SyncOptions.ES_MAX_CONNECTIONS_TOTAL.key(), value, 1, 10_000));
+            config.getOptional(SyncOptions.ES_CONNECTION_KEEP_ALIVE).ifPresent(value ->
+                    checkPositive(errors, SyncOptions.ES_CONNECTION_KEEP_ALIVE.key(), value));
+            checkPositive(errors, SyncOptions.ES_CONNECTION_TIMEOUT.key(), config.get(SyncOptions.ES_CONNECTION_TIMEOUT));
+            checkPositive(errors, SyncOptions.SINK_FLUSH_TIMEOUT.key(), config.get(SyncOptions.SINK_FLUSH_TIMEOUT));
+            if (config.get(SyncOptions.ES_CLIENT_IDLE_TIMEOUT).isNegative()) {
+                errors.add(SyncOptions.ES_CLIENT_IDLE_TIMEOUT.key() + " must not be negative");
+            }
+            checkPositive(errors, SyncOptions.ES_SOCKET_TIMEOUT.key(), config.get(SyncOptions.ES_SOCKET_TIMEOUT));
+            checkRange(errors, SyncOptions.BULK_MAX_IN_FLIGHT_REQUESTS.key(),
+                    config.get(SyncOptions.BULK_MAX_IN_FLIGHT_REQUESTS), 1, 64);
+            checkRange(errors, SyncOptions.BULK_MAX_ACTIONS.key(), config.get(SyncOptions.BULK_MAX_ACTIONS), 1, 100_000);
+            if (config.get(SyncOptions.BULK_MAX_SIZE).getBytes() < 1) {
+                errors.add(SyncOptions.BULK_MAX_SIZE.key() + " must be positive");
+            }
+            checkPositive(errors, SyncOptions.BULK_FLUSH_INTERVAL.key(), config.get(SyncOptions.BULK_FLUSH_INTERVAL));
+            if (config.get(SyncOptions.BULK_ADAPTIVE_ENABLED)) {
+                checkPositive(errors, SyncOptions.BULK_ADAPTIVE_TARGET_LATENCY.key(),
+                        config.get(SyncOptions.BULK_ADAPTIVE_TARGET_LATENCY));
+                checkRange(errors, SyncOptions.BULK_ADAPTIVE_MIN_ACTIONS.key(),
+                        config.get(SyncOptions.BULK_ADAPTIVE_MIN_ACTIONS), 1, config.get(SyncOptions.BULK_MAX_ACTIONS));
+            }
+            checkRange(errors, SyncOptions.BULK_MAX_RETRIES.key(), config.get(SyncOptions.BULK_MAX_RETRIES), 0, 100);
+            checkPositive(errors, SyncOptions.BULK_INITIAL_BACKOFF.key(), config.get(SyncOptions.BULK_INITIAL_BACKOFF));
+            if (config.get(SyncOptions.BULK_MAX_BACKOFF).compareTo(config.get(SyncOptions.BULK_INITIAL_BACKOFF)) < 0) {
+                errors.add(SyncOptions.BULK_MAX_BACKOFF.key() + " must not be less than "
+                        + SyncOptions.BULK_INITIAL_BACKOFF.key());
+            }
+            checkRange(errors, SyncOptions.SINK_METRICS_LATENCY_WINDOW_SIZE.key(),
+                    config.get(SyncOptions.SINK_METRICS_LATENCY_WINDOW_SIZE), 16, 1_000_000);
+
+            String suffix = config.getOptional(SyncOptions.REBUILD_INDEX_SUFFIX).orElse(null);
+            if (suffix != null && !suffix.matches("[a-z0-9][a-z0-9_.-]*")) {
+                errors.add(SyncOptions.REBUILD_INDEX_SUFFIX.key()
+                        + " may only contain lowercase letters, digits, '_', '.' and '-', got " + suffix);
+            }
+            // 重建作业不产生订单宽表的 keyed state，之后的增量作业从空状态开始，
+            // 第一次订单项变更就会用只含该订单项的 items 覆盖重建写入的全部订单项，地址变更也找不到引用它的订单
+            if (config.get(SyncOptions.REBUILD_ENABLED) && config.get(SyncOptions.DENORMALIZE_ORDERS)) {
+                errors.add(SyncOptions.REBUILD_ENABLED.key() + " cannot be used with "
+                        + SyncOptions.DENORMALIZE_ORDERS.key() + "=true, the incremental job would start without "
+                        + "the order document state; resync orders from a full snapshot with an empty checkpoint.dir instead");
+            }
+            checkRange(errors, SyncOptions.REBUILD_BULK_MAX_ACTIONS.key(),
+                    config.get(SyncOptions.REBUILD_BULK_MAX_ACTIONS), 1, 100_000);
+            if (config.get(SyncOptions.REBUILD_BULK_MAX_SIZE).getBytes() < 1) {
+                errors.add(SyncOptions.REBUILD_BULK_MAX_SIZE.key() + " must be positive");
+            }
+
+            if (config.get(SyncOptions.CHECKPOINT_INTERVAL).toMillis() < 10) {
+                errors.add(SyncOptions.CHECKPOINT_INTERVAL.key() + " must be at least 10 ms");
+            }
+            checkPositive(errors, SyncOptions.CHECKPOINT_TIMEOUT.key(), config.get(SyncOptions.CHECKPOINT_TIMEOUT));
+            if (config.get(SyncOptions.CHECKPOINT_MIN_PAUSE).isNegative()) {
+                errors.add(SyncOptions.CHECKPOINT_MIN_PAUSE.key() + " must not be negative");
+            }
+            if (config.get(SyncOptions.CHECKPOINT_UNALIGNED)
+                    && config.get(SyncOptions.CHECKPOINT_MODE) != CheckpointingMode.EXACTLY_ONCE) {
+                errors.add(SyncOptions.CHECKPOINT_UNALIGNED.key() + " requires " + SyncOptions.CHECKPOINT_MODE.key()
+                        + "=EXACTLY_ONCE");
+            }
+            if (config.get(SyncOptions.CHECKPOINT_ALIGNED_TIMEOUT).isNegative()) {
+                errors.add(SyncOptions.CHECKPOINT_ALIGNED_TIMEOUT.key() + " must not be negative");
+            }
+            checkPositive(errors, SyncOptions.CHECKPOINT_BUFFER_DEBLOAT_TARGET.key(),
+                    config.get(SyncOptions.CHECKPOINT_BUFFER_DEBLOAT_TARGET));
+            checkRange(errors, SyncOptions.CHECKPOINT_MAX_CONCURRENT.key(),
+                    config.get(SyncOptions.CHECKPOINT_MAX_CONCURRENT), 1, 16);
+            checkRange(errors, SyncOptions.CHECKPOINT_TOLERABLE_FAILURES.key(),
+                    config.get(SyncOptions.CHECKPOINT_TOLERABLE_FAILURES), 0, Integer.MAX_VALUE);
+            checkRange(errors, SyncOptions.WEB_PORT.key(), config.get(SyncOptions.WEB_PORT), 0, 65535);
+
+            // 行过滤条件的语法
+            TableFilters.fromConfiguration(config);
+            // 索引名模板的语法，重建只切换以表名命名的别名，不支持按模板命名的索引
+            IndexRouting indexRouting = IndexRouting.fromConfiguration(config);
+            if (config.get(SyncOptions.REBUILD_ENABLED) && indexRouting.renamesIndices()) {
+                errors.add(SyncOptions.REBUILD_ENABLED.key() + " does not support " + SyncOptions.INDEX_NAME_PREFIX
+                        + "* templates, remove them for the rebuild");
+            }
+        } catch (IllegalArgumentException | DateTimeException e) {
+            // 取值无法解析为对应类型，如端口写成了非数字
+            errors.add(e.getMessage());
+        }
+
+        if (!errors.isEmpty()) {
+            throw new IllegalArgumentException("Invalid sync configuration:\n  - " + String.join("\n  - ", errors));
+        }
+    }
+
+    private static void checkRange(List<String> errors, String key, int value, int min, int max) {
+        if (value < min || value > max) {
+            errors.add(key + " must be between " + min + " and " + max + ", got " + value);
+        }
+    }
+
+    private static void checkPositive(List<String> errors, String key, Duration value) {
+        if (value.isZero() || value.isNegative()) {
+            errors.add(key + " must be positive, got " + value);
+        }
+    }
+
+    /**
+     * 每个 source 并行实例都需要一个独立的 server id
+     */
+    private static void checkServerIds(List<String> errors, String serverId, int parallelism) {
+        String key = SyncOptions.MYSQL_SERVER_ID.key();
+        try {
+            int dash = serverId.indexOf('-');
+            long count = dash < 0 ? 1
+                    : Long.parseLong(serverId.substring(dash + 1).trim()) - Long.parseLong(serverId.substring(0, dash).trim()) + 1;
+            if (dash < 0) {
+                Long.parseLong(serverId.trim());
+            }
+            if (count < parallelism) {
+                errors.add(key + " " + serverId + " provides " + count + " ids but "
+                        + SyncOptions.SOURCE_PARALLELISM.key() + " is " + parallelism);
+            }
+        } catch (NumberFormatException e) {
+            errors.add(key + " must be a number or a range like 5500-5600, got " + serverId);
+        }
+    }
+}
@@ -0,0 +1,512 @@
+package com.mall4cloud.sync;
+
+import org.apache.flink.configuration.ConfigOption;
+import org.apache.flink.configuration.ConfigOptions;
+import org.apache.flink.configuration.MemorySize;
+import org.apache.flink.core.execution.CheckpointingMode;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 同步作业的全部配置项。取值来源及优先级见 {@link SyncConfig}，旧的 -D 参数名作为兼容键保留
+ */
+public final class SyncOptions {
+
+    private SyncOptions() {
+    }
+
+    // ------------------------------------------------------------------------
+    //  MySQL CDC source
+    // ------------------------------------------------------------------------
+
+    public static final ConfigOption<String> MYSQL_HOSTNAME = ConfigOptions.key("mysql.hostname")
+            .stringType()
+            .defaultValue("127.0.0.1")
+            .withDescription("MySQL 地址");
+
+    public static final ConfigOption<Integer> MYSQL_PORT = ConfigOptions.key("mysql.port")
+            .intType()
+            .defaultValue(3306)
+            .withDescription("MySQL 端口");
+
+    public static final ConfigOption<String> MYSQL_USERNAME = ConfigOptions.key("mysql.username")
+            .stringType()
+            .defaultValue("cluster")
+            .withDescription("MySQL 用户名，需要 REPLICATION SLAVE / REPLICATION CLIENT 权限");
+
+    public static final ConfigOption<String> MYSQL_PASSWORD = ConfigOptions.key("mysql.password")
+            .stringType()
+            .defaultValue("cluster")
+            .withDescription("MySQL 密码");
+
+    public static final ConfigOption<String> MYSQL_DATABASE = ConfigOptions.key("mysql.database")
+            .stringType()
+            .defaultValue("mall4cloud_order")
+            .withDescription("要同步的库");
+
+    public static final ConfigOption<List<String>> MYSQL_TABLES = ConfigOptions.key("mysql.tables")
+            .stringType()
+            .asList()
+            .defaultValues("order", "order_addr", "order_item", "undo_log")
+            .withDescription("要同步的表，分号分隔，不带库名");
+
+    public static final ConfigOption<String> MYSQL_SERVER_ID = ConfigOptions.key("mysql.server-id")
+            .stringType()
+            .defaultValue("5500-5600")
+            .withDescription("binlog 客户端的 server id 范围，区间大小不能小于 source 并行度");
+
+    public static final ConfigOption<String> MYSQL_SERVER_TIME_ZONE = ConfigOptions.key("mysql.server-time-zone")
+            .stringType()
+            .defaultValue("UTC")
+            .withDescription("MySQL 服务端时区");
+
+    public static final ConfigOption<Duration> MYSQL_HEARTBEAT_INTERVAL = ConfigOptions.key("mysql.heartbeat-interval")
+            .durationType()
+            .defaultValue(Duration.ofSeconds(30))
+            .withDescription("binlog 心跳间隔，表长时间无变更时也能推进 binlog 位置、保持连接活跃");
+
+    public static final ConfigOption<StartupMode> MYSQL_STARTUP_MODE = ConfigOptions.key("mysql.startup.mode")
+            .enumType(StartupMode.class)
+            .defaultValue(StartupMode.INITIAL)
+            .withDescription("启动模式，见 StartupMode；从 checkpoint 恢复时以 checkpoint 中的位置为准");
+
+    public static final ConfigOption<String> MYSQL_STARTUP_BINLOG_FILE = ConfigOptions.key("mysql.startup.binlog-file")
+            .stringType()
+            .noDefaultValue()
+            .withDescription("SPECIFIC_OFFSET 模式下开始读取的 binlog 文件");
+
+    public static final ConfigOption<Long> MYSQL_STARTUP_BINLOG_POSITION = ConfigOptions.key("mysql.startup.binlog-position")
+            .longType()
+            .defaultValue(4L)
+            .withDescription("SPECIFIC_OFFSET 模式下开始读取的 binlog 位置");
+
+    public static final ConfigOption<Integer> SOURCE_SPLIT_SIZE = ConfigOptions.key("source.split-size")
+            .intType()
+            .defaultValue(8096)
+            .withDescription("全量快照阶段每个分片的行数");
+
+    public static final ConfigOption<Integer> SOURCE_FETCH_SIZE = ConfigOptions.key("source.fetch-size")
+            .intType()
+            .defaultValue(1024)
+            .withDescription("全量快照读取分片时每次从 JDBC 拉取的行数，仅 CURSOR 模式下生效");
+
+    public static final ConfigOption<SnapshotResultSet> SOURCE_SNAPSHOT_RESULT_SET =
+            ConfigOptions.key("source.snapshot.result-set")
+                    .enumType(SnapshotResultSet.class)
+                    .defaultValue(SnapshotResultSet.STREAMING)
+                    .withDescription("全量快照读取分片的结果集模式，见 SnapshotResultSet");
+
+    public static final ConfigOption<Double> SOURCE_DISTRIBUTION_FACTOR_UPPER =
+            ConfigOptions.key("source.distribution-factor.upper")
+                    .doubleType()
+                    .defaultValue(1000.0d)
+                    .withDescription("分片列分布因子 (max - min + 1) / 行数 的上限，在上下限之间视为均匀分布，"
+                            + "按步长直接计算分片边界；否则逐个查询分片边界，分片行数更均匀但划分更慢");
+
+    public static final ConfigOption<Double> SOURCE_DISTRIBUTION_FACTOR_LOWER =
+            ConfigOptions.key("source.distribution-factor.lower")
+                    .doubleType()
+                    .defaultValue(0.05d)
+                    .withDescription("分片列分布因子的下限");
+
+    public static final ConfigOption<List<String>> SOURCE_CHUNK_KEY_COLUMNS = ConfigOptions.key("source.chunk-key-columns")
+            .stringType()
+            .asList()
+            .noDefaultValue()
+            .withDescription("按表指定快照分片列，格式为 table:column，分号分隔，未指定的表使用主键。"
+                    + "分片列需要有索引且不会被更新，只支持单列");
+
+    public static final ConfigOption<Integer> SOURCE_BINLOG_QUEUE_SIZE = ConfigOptions.key("source.binlog.queue-size")
+            .intType()
+            .defaultValue(8192)
+            .withDescription("binlog 读取线程与过滤线程之间队列的容量（事件数），对应 Debezium 的 max.queue.size，"
+                    + "队列满时 binlog 读取线程阻塞");
+
+    public static final ConfigOption<Integer> SOURCE_BINLOG_BATCH_SIZE = ConfigOptions.key("source.binlog.batch-size")
+            .intType()
+            .defaultValue(2048)
+            .withDescription("每次从队列取出的最大事件数，对应 Debezium 的 max.batch.size，需要小于队列容量");
+
+    public static final ConfigOption<Duration> SOURCE_BINLOG_POLL_INTERVAL = ConfigOptions.key("source.binlog.poll-interval")
+            .durationType()
+            .defaultValue(Duration.ofMillis(500))
+            .withDescription("队列为空时等待新事件的时长，对应 Debezium 的 poll.interval.ms");
+
+    public static final ConfigOption<Duration> SOURCE_METRICS_LAG_INTERVAL = ConfigOptions.key("source.metrics.lag-interval")
+            .durationType()
+            .defaultValue(Duration.ofSeconds(10))
+            .withDescription("查询 MySQL 最新 binlog 位置、计算 binlog 延迟字节数的间隔");
+
+    public static final ConfigOption<Integer> SOURCE_PARALLELISM = ConfigOptions.key("source.parallelism")
+            .intType()
+            .defaultValue(4)
+            .withDescription("CDC source 的并行度");
+
+    // ------------------------------------------------------------------------
+    //  转换与宽表
+    // ------------------------------------------------------------------------
+
+    public static final ConfigOption<Boolean> DIRECT_JSON = ConfigOptions.key("sync.direct-json")
+            .booleanType()
+            .defaultValue(true)
+            .withDeprecatedKeys("sync.directJson")
+            .withDescription("行数据直接序列化为 JSON 字节，省去中间 Map，写入的文档与 Map 模式相同；构建订单宽表时宽表的三张表仍使用 Map");
+
+    public static final ConfigOption<Boolean> PARTIAL_UPDATE = ConfigOptions.key("sync.partial-update")
+            .booleanType()
+            .defaultValue(true)
+            .withDeprecatedKeys("sync.partialUpdate")
+            .withDescription("更新事件只发送变化的列（update + doc_as_upsert）");
+
+    public static final ConfigOption<Boolean> DENORMALIZE_ORDERS = ConfigOptions.key("sync.orders.denormalize")
+            .booleanType()
+            .defaultValue(false)
+            .withDescription("把 order、order_addr、order_item 合并写入 orders 宽表索引，开启后这三张表不再写入各自的索引");
+
+    public static final ConfigOption<Integer> ORDERS_PARALLELISM = ConfigOptions.key("sync.orders.parallelism")
+            .intType()
+            .defaultValue(4)
+            .withDescription("订单宽表构建与地址关联算子的并行度");
+
+    public static final ConfigOption<Duration> ORDERS_DELETED_TTL = ConfigOptions.key("sync.orders.deleted-ttl")
+            .durationType()
+            .defaultValue(Duration.ofDays(7))
+            .withDescription("已删除或被行过滤的订单的删除标记保留时长，期间迟到的订单项与收货地址变更被丢弃；"
+                    + "需要覆盖全量快照的耗时，快照中被过滤订单的订单项可能在很久之后才读到");
+
+    public static final ConfigOption<List<String>> FILTER_EXCLUDE_TABLES = ConfigOptions.key("sync.filter.exclude-tables")
+            .stringType()
+            .asList()
+            .defaultValues("undo_log")
+            .withDeprecatedKeys("sync.filter.excludeTables")
+            .withDescription("整张丢弃的表，分号分隔，同时不加入 source");
+
+    /**
+     * 按表的列投影，完整的键为 sync.filter.columns.&lt;table&gt;，值为逗号分隔的列名
+     */
+    public static final String FILTER_COLUMNS_PREFIX = "sync.filter.columns.";
+
+    /**
+     * 按表的行过滤，完整的键为 sync.filter.rows.&lt;table&gt;，值为逗号分隔的 column=value / column!=value
+     */
+    public static final String FILTER_ROWS_PREFIX = "sync.filter.rows.";
+
+    // ------------------------------------------------------------------------
+    //  Elasticsearch sink
+    // ------------------------------------------------------------------------
+
+    public static final ConfigOption<List<String>> ES_HOSTS = ConfigOptions.key("es.hosts")
+            .stringType()
+            .asList()
+            .defaultValues("https://localhost:9200")
+            .withDeprecatedKeys("es.url")
+            .withDescription("Elasticsearch 节点地址，分号分隔，bulk 请求在这些节点之间轮询");
+
+    public static final ConfigOption<Boolean> ES_SNIFF_ENABLED = ConfigOptions.key("es.sniff.enabled")
+            .booleanType()
+            .defaultValue(false)
+            .withDescription("定期通过 _nodes/http 发现集群中的全部节点，替换 es.hosts 中配置的节点列表");
+
+    public static final ConfigOption<Duration> ES_SNIFF_INTERVAL = ConfigOptions.key("es.sniff.interval")
+            .durationType()
+            .defaultValue(Duration.ofMinutes(5))
+            .withDescription("发现节点的间隔");
+
+    public static final ConfigOption<Duration> ES_SNIFF_AFTER_FAILURE_DELAY = ConfigOptions.key("es.sniff.after-failure-delay")
+            .durationType()
+            .defaultValue(Duration.ofMinutes(1))
+            .withDescription("请求某个节点失败后立即重新发现节点，之后按该间隔再发现一次");
+
+    public static final ConfigOption<NodeSelection> ES_NODE_SELECTOR = ConfigOptions.key("es.node-selector")
+            .enumType(NodeSelection.class)
+            .defaultValue(NodeSelection.SKIP_DEDICATED_MASTERS)
+            .withDescription("请求发往哪些节点，见 NodeSelection；节点角色只有开启 es.sniff.enabled 后才知道");
+
+    public static final ConfigOption<Integer> ES_MAX_CONNECTIONS_PER_ROUTE = ConfigOptions.key("es.connection.max-per-route")
+            .intType()
+            .noDefaultValue()
+            .withDescription("每个节点的最大连接数，未配置时为 es.sink.parallelism * es.bulk.max-in-flight-requests + 1");
+
+    public static final ConfigOption<Integer> ES_MAX_CONNECTIONS_TOTAL = ConfigOptions.key("es.connection.max-total")
+            .intType()
+            .noDefaultValue()
+            .withDescription("连接池的最大连接数，未配置时为 每个节点的最大连接数 * 节点数，开启节点发现时至少为 50");
+
+    public static final ConfigOption<Duration> ES_CONNECTION_KEEP_ALIVE = ConfigOptions.key("es.connection.keep-alive")
+            .durationType()
+            .noDefaultValue()
+            .withDescription("空闲连接最多保留多久，超过后不再复用；未配置时按响应的 Keep-Alive 头，没有时一直保留。"
+                    + "经过负载均衡或 NAT 时应小于其空闲超时，避免复用已被静默断开的连接");
+
+    public static final ConfigOption<String> ES_USERNAME = ConfigOptions.key("es.username")
+            .stringType()
+            .defaultValue("elastic")
+            .withDescription("Elasticsearch 用户名");
+
+    public static final ConfigOption<String> ES_PASSWORD = ConfigOptions.key("es.password")
+            .stringType()
+            .defaultValue("elastic")
+            .withDescription("Elasticsearch 密码");
+
+    public static final ConfigOption<Duration> ES_CONNECTION_TIMEOUT = ConfigOptions.key("es.connection-timeout")
+            .durationType()
+            .defaultValue(Duration.ofSeconds(5))
+            .withDeprecatedKeys("es.connectionTimeout")
+            .withDescription("建立连接的超时时间，纯数字按毫秒解析");
+
+    public static final ConfigOption<Duration> ES_SOCKET_TIMEOUT = ConfigOptions.key("es.socket-timeout")
+            .durationType()
+            .defaultValue(Duration.ofSeconds(60))
+            .withDeprecatedKeys("es.socketTimeout")
+            .withDescription("等待响应的超时时间，纯数字按毫秒解析");
+
+    public static final ConfigOption<Duration> ES_CLIENT_IDLE_TIMEOUT = ConfigOptions.key("es.client.idle-timeout")
+            .durationType()
+            .defaultValue(Duration.ofSeconds(30))
+            .withDescription("同一个 TaskManager 中的 sink 共用 Elasticsearch 客户端，最后一个 sink 关闭后客户端再保留的时间，"
+                    + "任务重启时可直接复用已建立的连接；为 0 时立即关闭");
+
+    /**
+     * 按表的索引名模板，完整的键为 es.index.name.&lt;table&gt;，如 order-{create_time:yyyy.MM}，
+     * 写入的索引会加入以表名命名的别名
+     */
+    public static final String INDEX_NAME_PREFIX = "es.index.name.";
+
+    /**
+     * 按表的路由列，完整的键为 es.index.routing.&lt;table&gt;，值为列名
+     */
+    public static final String INDEX_ROUTING_PREFIX = "es.index.routing.";
+
+    public static final ConfigOption<Integer> SINK_PARALLELISM = ConfigOptions.key("es.sink.parallelism")
+            .intType()
+            .defaultValue(4)
+            .withDescription("Elasticsearch sink 的并行度");
+
+    public static final ConfigOption<Boolean> SINK_KEY_BY_DOCUMENT = ConfigOptions.key("es.sink.key-by-document")
+            .booleanType()
+            .defaultValue(true)
+            .withDeprecatedKeys("sync.sink.keyByDocument")
+            .withDescription("按 表名 + 主键 分区，保证单文档写入顺序并使缓冲区去重生效");
+
+    public static final ConfigOption<Boolean> SINK_FLUSH_ON_CHECKPOINT = ConfigOptions.key("es.sink.flush-on-checkpoint")
+            .booleanType()
+            .defaultValue(false)
+            .withDescription("checkpoint 时是否等待缓冲区全部写入 Elasticsearch；默认不等待，未确认的 bulk 操作写入状态，恢复时重新发送");
+
+    public static final ConfigOption<Duration> SINK_FLUSH_TIMEOUT = ConfigOptions.key("es.sink.flush-timeout")
+            .durationType()
+            .defaultValue(Duration.ofSeconds(30))
+            .withDescription("es.sink.flush-on-checkpoint=true 时 checkpoint 最多等待 bulk 请求完成的时间，"
+                    + "超时后不再等待，未确认的操作写入状态；输入结束与关闭时不受限制");
+
+    public static final ConfigOption<Boolean> BULK_ASYNC = ConfigOptions.key("es.bulk.async")
+            .booleanType()
+            .defaultValue(true)
+            .withDescription("bulk 请求在后台异步执行，写入线程只负责攒批");
+
+    public static final ConfigOption<Boolean> BULK_COMPRESSION = ConfigOptions.key("es.bulk.compression")
+            .booleanType()
+            .defaultValue(false)
+            .withDescription("以 gzip 压缩 bulk 请求体（Content-Encoding: gzip），用少量 CPU 换取网络带宽");
+
+    public static final ConfigOption<Integer> BULK_MAX_IN_FLIGHT_REQUESTS = ConfigOptions.key("es.bulk.max-in-flight-requests")
+            .intType()
+            .defaultValue(1)
+            .withDeprecatedKeys("es.bulk.maxInFlightRequests")
+            .withDescription("每个 sink subtask 同时进行中的 bulk 请求数");
+
+    public static final ConfigOption<Integer> BULK_MAX_ACTIONS = ConfigOptions.key("es.bulk.max-actions")
+            .intType()
+            .defaultValue(1000)
+            .withDescription("每个 bulk 请求的最大操作数");
+
+    public static final ConfigOption<MemorySize> BULK_MAX_SIZE = ConfigOptions.key("es.bulk.max-size")
+            .memoryType()
+            .defaultValue(MemorySize.parse("5mb"))
+            .withDeprecatedKeys("es.bulk.maxSizeBytes")
+            .withDescription("每个 bulk 请求的最大字节数（估算值），纯数字按字节解析");
+
+    public static final ConfigOption<Duration> BULK_FLUSH_INTERVAL = ConfigOptions.key("es.bulk.flush-interval")
+            .durationType()
+            .defaultValue(Duration.ofSeconds(10))
+            .withDeprecatedKeys("es.bulk.flushIntervalMs")
+            .withDescription("缓冲区中的数据最多停留的时间，纯数字按毫秒解析");
+
+    public static final ConfigOption<Boolean> BULK_ADAPTIVE_ENABLED = ConfigOptions.key("es.bulk.adaptive.enabled")
+            .booleanType()
+            .defaultValue(false)
+            .withDescription("按 Elasticsearch 的响应自动调整每批操作数与进行中的请求数（加性增、乘性减），"
+                    + "以 es.bulk.max-actions 与 es.bulk.max-in-flight-requests 为上限");
+
+    public static final ConfigOption<Duration> BULK_ADAPTIVE_TARGET_LATENCY = ConfigOptions.key("es.bulk.adaptive.target-latency")
+            .durationType()
+            .defaultValue(Duration.ofSeconds(1))
+            .withDescription("bulk 请求的目标耗时，低于该值时逐步增大批次与并发，超过或有条目被拒绝时减半");
+
+    public static final ConfigOption<Integer> BULK_ADAPTIVE_MIN_ACTIONS = ConfigOptions.key("es.bulk.adaptive.min-actions")
+            .intType()
+            .defaultValue(100)
+            .withDescription("自适应时每批操作数的下限，同时也是每次增加的步长");
+
+    public static final ConfigOption<Integer> BULK_MAX_RETRIES = ConfigOptions.key("es.bulk.max-retries")
+            .intType()
+            .defaultValue(8)
+            .withDeprecatedKeys("es.bulk.maxRetries")
+            .withDescription("bulk 请求或被拒绝条目的最大重试次数，用尽后作业失败");
+
+    public static final ConfigOption<Duration> BULK_INITIAL_BACKOFF = ConfigOptions.key("es.bulk.initial-backoff")
+            .durationType()
+            .defaultValue(Duration.ofMillis(200))
+            .withDeprecatedKeys("es.bulk.initialBackoffMs")
+            .withDescription("第一次重试前的等待时间，之后指数增长");
+
+    public static final ConfigOption<Duration> BULK_MAX_BACKOFF = ConfigOptions.key("es.bulk.max-backoff")
+            .durationType()
+            .defaultValue(Duration.ofSeconds(30))
+            .withDeprecatedKeys("es.bulk.maxBackoffMs")
+            .withDescription("重试等待时间的上限");
+
+    public static final ConfigOption<Boolean> BULK_EXTERNAL_VERSION = ConfigOptions.key("es.bulk.external-version")
+            .booleanType()
+            .defaultValue(true)
+            .withDeprecatedKeys("es.bulk.externalVersion")
+            .withDescription("以 binlog 位置作为外部版本号（external_gte）");
+
+    public static final ConfigOption<Boolean> BULK_DEDUPLICATE = ConfigOptions.key("es.bulk.deduplicate")
+            .booleanType()
+            .defaultValue(true)
+            .withDescription("同一文档在一个刷新窗口内的多次变更只保留最后一次");
+
+    public static final ConfigOption<Integer> SINK_METRICS_LATENCY_WINDOW_SIZE = ConfigOptions.key("es.metrics.latency-window-size")
+            .intType()
+            .defaultValue(4096)
+            .withDescription("sink 的直方图（每张表的同步延迟、bulk 请求耗时等）保留最近多少个样本用于计算分位数，p999 至少需要上千个样本才有意义");
+
+    // ------------------------------------------------------------------------
+    //  全量重建
+    // ------------------------------------------------------------------------
+
+    public static final ConfigOption<Boolean> REBUILD_ENABLED = ConfigOptions.key("sync.rebuild.enabled")
+            .booleanType()
+            .defaultValue(false)
+            .withDescription("全量重建模式：只读取快照并跳过 binlog 回填，写入新的带版本后缀的索引，"
+                    + "完成后恢复索引设置并原子地切换别名，作业随后退出，见 IndexRebuilder");
+
+    public static final ConfigOption<String> REBUILD_INDEX_SUFFIX = ConfigOptions.key("sync.rebuild.index-suffix")
+            .stringType()
+            .noDefaultValue()
+            .withDescription("新索引的后缀，索引名为 表名_后缀，未配置时使用启动时间 yyyyMMddHHmmss");
+
+    public static final ConfigOption<Integer> REBUILD_BULK_MAX_ACTIONS = ConfigOptions.key("sync.rebuild.bulk.max-actions")
+            .intType()
+            .defaultValue(5000)
+            .withDescription("重建模式下每个 bulk 请求的最大操作数，替代 es.bulk.max-actions");
+
+    public static final ConfigOption<MemorySize> REBUILD_BULK_MAX_SIZE = ConfigOptions.key("sync.rebuild.bulk.max-size")
+            .memoryType()
+            .defaultValue(MemorySize.parse("15mb"))
+            .withDescription("重建模式下每个 bulk 请求的最大字节数，替代 es.bulk.max-size");
+
+    // ------------------------------------------------------------------------
+    //  Checkpoint 与运行环境
+    // ------------------------------------------------------------------------
+
+    public static final ConfigOption<Duration> CHECKPOINT_INTERVAL = ConfigOptions.key("checkpoint.interval")
+            .durationType()
+            .defaultValue(Duration.ofSeconds(60))
+            .withDescription("checkpoint 间隔");
+
+    public static final ConfigOption<CheckpointingMode> CHECKPOINT_MODE = ConfigOptions.key("checkpoint.mode")
+            .enumType(CheckpointingMode.class)
+            .defaultValue(CheckpointingMode.EXACTLY_ONCE)
+            .withDescription("checkpoint 一致性模式");
+
+    public static final ConfigOption<Duration> CHECKPOINT_MIN_PAUSE = ConfigOptions.key("checkpoint.min-pause")
+            .durationType()
+            .defaultValue(Duration.ofSeconds(30))
+            .withDescription("两次 checkpoint 之间的最小间隔");
+
+    public static final ConfigOption<Duration> CHECKPOINT_TIMEOUT = ConfigOptions.key("checkpoint.timeout")
+            .durationType()
+            .defaultValue(Duration.ofSeconds(60))
+            .withDescription("checkpoint 超时时间");
+
+    public static final ConfigOption<Integer> CHECKPOINT_MAX_CONCURRENT = ConfigOptions.key("checkpoint.max-concurrent")
+            .intType()
+            .defaultValue(1)
+            .withDescription("同时进行的 checkpoint 数");
+
+    public static final ConfigOption<Integer> CHECKPOINT_TOLERABLE_FAILURES = ConfigOptions.key("checkpoint.tolerable-failures")
+            .intType()
+            .defaultValue(3)
+            .withDescription("允许连续失败的 checkpoint 次数");
+
+    public static final ConfigOption<Boolean> CHECKPOINT_UNALIGNED = ConfigOptions.key("checkpoint.unaligned")
+            .booleanType()
+            .defaultValue(true)
+            .withDescription("允许非对齐 checkpoint：barrier 越过网络缓冲区中的数据，这些数据随 checkpoint 一起保存，"
+                    + "反压时 checkpoint 不再等待下游处理完积压的数据，仅在 EXACTLY_ONCE 模式下生效");
+
+    public static final ConfigOption<Duration> CHECKPOINT_ALIGNED_TIMEOUT = ConfigOptions.key("checkpoint.aligned-timeout")
+            .durationType()
+            .defaultValue(Duration.ofSeconds(10))
+            .withDescription("开启非对齐 checkpoint 时，先按对齐方式进行，对齐超过该时间后才切换为非对齐，0 表示总是非对齐");
+
+    public static final ConfigOption<Boolean> CHECKPOINT_BUFFER_DEBLOAT = ConfigOptions.key("checkpoint.buffer-debloat.enabled")
+            .booleanType()
+            .defaultValue(true)
+            .withDescription("根据吞吐自动缩小网络缓冲区，使积压的数据能在目标时间内处理完，减少 barrier 的等待与非对齐 checkpoint 的大小");
+
+    public static final ConfigOption<Duration> CHECKPOINT_BUFFER_DEBLOAT_TARGET = ConfigOptions.key("checkpoint.buffer-debloat.target")
+            .durationType()
+            .defaultValue(Duration.ofSeconds(1))
+            .withDescription("网络缓冲区中积压的数据预计处理完的目标时间");
+
+    public static final ConfigOption<String> CHECKPOINT_DIR = ConfigOptions.key("checkpoint.dir")
+            .stringType()
+            .defaultValue("./checkpoints")
+            .withDeprecatedKeys("sync.checkpointDir")
+            .withDescription("checkpoint 存储目录");
+
+    public static final ConfigOption<Integer> WEB_PORT = ConfigOptions.key("web.port")
+            .intType()
+            .defaultValue(8081)
+            .withDescription("本地 Flink Web UI 端口");
+
+    /**
+     * 作业首次启动时从哪里开始读取
+     */
+    public enum StartupMode {
+        /** 先读取全量快照，再从快照开始时的 binlog 位置继续读取增量 */
+        INITIAL,
+        /** 只从当前最新的 binlog 位置读取增量 */
+        LATEST,
+        /** 从指定的 binlog 文件与位置读取增量，如全量重建完成后接着同步重建期间的变更 */
+        SPECIFIC_OFFSET
+    }
+
+    /**
+     * 请求发往哪些 Elasticsearch 节点，在选中的节点之间轮询，失败的节点暂时跳过
+     */
+    public enum NodeSelection {
+        /** 全部节点 */
+        ANY,
+        /** 跳过只有 master 角色的节点，避免专用 master 节点承担 bulk 的协调工作 */
+        SKIP_DEDICATED_MASTERS,
+        /** 只发往 data 节点，协调节点本身持有部分分片，减少一次转发 */
+        DATA
+    }
+
+    /**
+     * 全量快照读取分片时 MySQL 驱动的结果集模式
+     */
+    public enum SnapshotResultSet {
+        /** 驱动默认行为，整个分片读入内存后才开始下发，fetch size 不生效 */
+        BUFFERED,
+        /** 服务端游标（useCursorFetch），每次拉取 fetch size 行，服务端需要为分片生成临时表 */
+        CURSOR,
+        /** 逐行流式读取，读取与下发同时进行，内存占用与分片大小无关 */
+        STREAMING
+    }
+}
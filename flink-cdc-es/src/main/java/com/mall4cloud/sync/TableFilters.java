@@ -0,0 +1,145 @@
+package com.mall4cloud.sync;
+
+import org.apache.flink.configuration.Configuration;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 按表配置的过滤规则，在反序列化阶段直接作用于 Debezium 的 Struct，不需要的表、列和行不会构建任何对象：
+ * <ul>
+ *     <li>排除的表：整张表的变更都丢弃，同时不加入 CDC source 的表列表</li>
+ *     <li>列投影：只保留配置的列，主键与外键列（以 _id 结尾）总是保留</li>
+ *     <li>行过滤：多个条件之间为“且”，条件形如 column=value 或 column!=value，按字符串比较</li>
+ * </ul>
+ * 构建订单宽表时，订单项与收货地址依附于订单：被过滤的 order 行不直接丢弃，而是作为删除输出，
+ * 宽表构建据此删除文档并丢弃该订单之后的订单项与收货地址，不会生成只有 items 的文档
+ */
+public class TableFilters implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public static final TableFilters NONE = new TableFilters(Set.of(), Map.of(), Map.of(), Set.of());
+
+    private final Set<String> excludedTables;
+    // 表名 -> 保留的列
+    private final Map<String, Set<String>> includedColumns;
+    // 表名 -> 行过滤条件
+    private final Map<String, List<Condition>> rowConditions;
+    // 被过滤的行作为删除输出的表
+    private final Set<String> deleteFilteredTables;
+
+    public TableFilters(Set<String> excludedTables, Map<String, Set<String>> includedColumns,
+                        Map<String, List<Condition>> rowConditions, Set<String> deleteFilteredTables) {
+        this.excludedTables = excludedTables;
+        this.includedColumns = includedColumns;
+        this.rowConditions = rowConditions;
+        this.deleteFilteredTables = deleteFilteredTables;
+    }
+
+    /**
+     * 从作业配置读取过滤规则，默认只丢弃 undo_log 表，行过滤需要显式配置，
+     * 如 sync.filter.rows.order=delete_status!=2 跳过用户彻底删除的订单
+     */
+    public static TableFilters fromConfiguration(Configuration config) {
+        Set<String> excludedTables = new LinkedHashSet<>();
+        for (String item : config.get(SyncOptions.FILTER_EXCLUDE_TABLES)) {
+            excludedTables.addAll(splitList(item));
+        }
+        Map<String, Set<String>> includedColumns = new HashMap<>();
+        Map<String, List<Condition>> rowConditions = new HashMap<>();
+        config.toMap().forEach((key, value) -> {
+            if (key.startsWith(SyncOptions.FILTER_COLUMNS_PREFIX)) {
+                includedColumns.put(key.substring(SyncOptions.FILTER_COLUMNS_PREFIX.length()),
+                        new LinkedHashSet<>(splitList(value)));
+            } else if (key.startsWith(SyncOptions.FILTER_ROWS_PREFIX)) {
+                rowConditions.put(key.substring(SyncOptions.FILTER_ROWS_PREFIX.length()), parseConditions(value));
+            }
+        });
+        Set<String> deleteFilteredTables = config.get(SyncOptions.DENORMALIZE_ORDERS)
+                ? Set.of(OrderDocumentBuilder.ORDER_TABLE) : Set.of();
+        return new TableFilters(excludedTables, includedColumns, rowConditions, deleteFilteredTables);
+    }
+
+    private static List<String> splitList(String value) {
+        List<String> items = new ArrayList<>();
+        if (value == null) {
+            return items;
+        }
+        for (String item : value.split(",")) {
+            if (!item.isBlank()) {
+                items.add(item.trim());
+            }
+        }
+        return items;
+    }
+
+    static List<Condition> parseConditions(String expression) {
+        List<Condition> conditions = new ArrayList<>();
+        for (String item : splitList(expression)) {
+            int notEquals = item.indexOf("!=");
+            int equals = item.indexOf('=');
+            if (notEquals > 0) {
+                conditions.add(new Condition(item.substring(0, notEquals).trim(),
+                        item.substring(notEquals + 2).trim(), true));
+            } else if (equals > 0) {
+                conditions.add(new Condition(item.substring(0, equals).trim(),
+                        item.substring(equals + 1).trim(), false));
+            } else {
+                throw new IllegalArgumentException("Invalid row filter condition: " + item
+                        + ", expected column=value or column!=value");
+            }
+        }
+        return conditions;
+    }
+
+    public boolean isExcluded(String table) {
+        return excludedTables.contains(table);
+    }
+
+    /**
+     * 该表要保留的列，未配置时返回 null 表示保留全部列
+     */
+    public Set<String> includedColumns(String table) {
+        return includedColumns.get(table);
+    }
+
+    public List<Condition> rowConditions(String table) {
+        return rowConditions.getOrDefault(table, List.of());
+    }
+
+    /**
+     * 该表被行过滤的行是否作为删除输出，而不是直接丢弃
+     */
+    public boolean deletesFilteredRows(String table) {
+        return deleteFilteredTables.contains(table);
+    }
+
+    @Override
+    public String toString() {
+        return "TableFilters{excludedTables=" + excludedTables
+                + ", includedColumns=" + includedColumns
+                + ", rowConditions=" + rowConditions
+                + ", deleteFilteredTables=" + deleteFilteredTables + '}';
+    }
+
+    /**
+     * 单个行过滤条件，negate 为 true 表示 column != value
+     */
+    public record Condition(String column, String value, boolean negate) implements Serializable {
+        public boolean test(Object columnValue) {
+            return String.valueOf(columnValue).equals(value) != negate;
+        }
+
+        @Override
+        public String toString() {
+            return column + (negate ? "!=" : "=") + value;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.cdc.connectors.mysql.debezium.reader;
+
+import io.debezium.connector.base.ChangeEventQueueMetrics;
+import org.apache.flink.cdc.connectors.mysql.source.offset.BinlogOffset;
+import org.apache.flink.cdc.connectors.mysql.source.utils.RecordUtils;
+import org.apache.flink.cdc.connectors.shaded.org.apache.kafka.connect.source.SourceRecord;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runtime statistics of the {@link BinlogSplitReader} of one source subtask.
+ *
+ * <p>The split reader is created by the connector and has no access to the metric group of the
+ * source operator, so the statistics are published per subtask index and registered as Flink
+ * metrics by an operator chained to the source. All fields are written by the split fetcher thread
+ * only and read by the metric reporter.
+ */
+public class BinlogReaderMetrics {
+
+    private static final Map<Integer, BinlogReaderMetrics> METRICS_BY_SUBTASK =
+            new ConcurrentHashMap<>();
+
+    @Nullable private volatile ChangeEventQueueMetrics queue;
+
+    private volatile long polledEvents;
+    private volatile long emittedEvents;
+    private volatile long filteredEvents;
+    private volatile int lastBatchSize;
+    private volatile long lastPollWaitNanos;
+    private volatile long lastFilterNanos;
+
+    @Nullable private volatile String binlogFilename;
+    private volatile long binlogPosition;
+    private volatile long lastEventTimestamp;
+
+    public static BinlogReaderMetrics forSubtask(int subtaskId) {
+        return METRICS_BY_SUBTASK.computeIfAbsent(subtaskId, id -> new BinlogReaderMetrics());
+    }
+
+    void setQueue(@Nullable ChangeEventQueueMetrics queue) {
+        this.queue = queue;
+    }
+
+    /** Records one {@code pollSplitRecords()} call. */
+    void recordBatch(int batchSize, int emitted, long pollWaitNanos, long filterNanos) {
+        polledEvents += batchSize;
+        emittedEvents += emitted;
+        filteredEvents += batchSize - emitted;
+        lastBatchSize = batchSize;
+        lastPollWaitNanos = pollWaitNanos;
+        lastFilterNanos = filterNanos;
+    }
+
+    /** Records the binlog position of the last event of a batch. */
+    void recordPosition(SourceRecord record) {
+        Map<String, ?> offset = record.sourceOffset();
+        if (offset == null || offset.get(BinlogOffset.BINLOG_FILENAME_OFFSET_KEY) == null) {
+            return;
+        }
+        BinlogOffset position = RecordUtils.getBinlogPosition(record);
+        binlogFilename = position.getFilename();
+        binlogPosition = position.getPosition();
+        if (RecordUtils.isDataChangeRecord(record)) {
+            Long timestamp = RecordUtils.getMessageTimestamp(record);
+            if (timestamp != null && timestamp > 0) {
+                lastEventTimestamp = timestamp;
+            }
+        }
+    }
+
+    /** Whether this subtask is currently reading the binlog. */
+    public boolean isReadingBinlog() {
+        return queue != null;
+    }
+
+    public int getQueueCapacity() {
+        ChangeEventQueueMetrics current = queue;
+        return current == null ? 0 : current.totalCapacity();
+    }
+
+    public int getQueueDepth() {
+        ChangeEventQueueMetrics current = queue;
+        return current == null ? 0 : current.totalCapacity() - current.remainingCapacity();
+    }
+
+    public long getPolledEvents() {
+        return polledEvents;
+    }
+
+    public long getEmittedEvents() {
+        return emittedEvents;
+    }
+
+    public long getFilteredEvents() {
+        return filteredEvents;
+    }
+
+    public int getLastBatchSize() {
+        return lastBatchSize;
+    }
+
+    public long getLastPollWaitNanos() {
+        return lastPollWaitNanos;
+    }
+
+    public long getLastFilterNanos() {
+        return lastFilterNanos;
+    }
+
+    @Nullable
+    public String getBinlogFilename() {
+        return binlogFilename;
+    }
+
+    public long getBinlogPosition() {
+        return binlogPosition;
+    }
+
+    /** The MySQL timestamp of the last data change event, 0 if none was read yet. */
+    public long getLastEventTimestamp() {
+        return lastEventTimestamp;
+    }
+}
@@ -71,7 +71,9 @@ public class BinlogSplitReader implements DebeziumReader<SourceRecords, MySqlSpl
 
     private MySqlBinlogSplitReadTask binlogSplitReadTask;
     private MySqlBinlogSplit currentBinlogSplit;
-    private Map<TableId, List<FinishedSnapshotSplitInfo>> finishedSplitsInfo;
+    private Map<TableId, FinishedSplitRangeIndex> finishedSplitsInfo;
+    // tableId -> the chunk key type, resolved once per table instead of once per event
+    private final Map<TableId, RowType> splitKeyTypes = new HashMap<>();
     // tableId -> the max splitHighWatermark
     private Map<TableId, BinlogOffset> maxSplitHighWatermarkMap;
     private final Set<TableId> pureBinlogPhaseTables;
@@ -79,6 +81,7 @@ public class BinlogSplitReader implements DebeziumReader<SourceRecords, MySqlSpl
     private final StoppableChangeEventSourceContext changeEventSourceContext =
             new StoppableChangeEventSourceContext();
     private final boolean isParsingOnLineSchemaChanges;
+    private final BinlogReaderMetrics metrics;
 
     private static final long READER_CLOSE_TIMEOUT = 30L;
 
@@ -100,6 +103,7 @@ public class BinlogSplitReader implements DebeziumReader<SourceRecords, MySqlSpl
         this.pureBinlogPhaseTables = new HashSet<>();
         this.isParsingOnLineSchemaChanges =
                 statefulTaskContext.getSourceConfig().isParseOnLineSchemaChanges();
+        this.metrics = BinlogReaderMetrics.forSubtask(subtaskId);
     }
 
     public void submitSplit(MySqlSplit mySqlSplit) {
@@ -108,6 +112,7 @@ public class BinlogSplitReader implements DebeziumReader<SourceRecords, MySqlSpl
         statefulTaskContext.configure(currentBinlogSplit);
         this.capturedTableFilter = statefulTaskContext.getSourceConfig().getTableFilter();
         this.queue = statefulTaskContext.getQueue();
+        metrics.setQueue(queue);
         this.binlogSplitReadTask =
                 new MySqlBinlogSplitReadTask(
                         statefulTaskContext.getConnectorConfig(),
@@ -153,7 +158,9 @@ public class BinlogSplitReader implements DebeziumReader<SourceRecords, MySqlSpl
         checkReadException();
         final List<SourceRecord> sourceRecords = new ArrayList<>();
         if (currentTaskRunning) {
+            long pollStart = System.nanoTime();
             List<DataChangeEvent> batch = queue.poll();
+            long filterStart = System.nanoTime();
             for (DataChangeEvent event : batch) {
                 if (isParsingOnLineSchemaChanges) {
                     Optional<SourceRecord> oscRecord =
@@ -167,6 +174,14 @@ public class BinlogSplitReader implements DebeziumReader<SourceRecords, MySqlSpl
                     sourceRecords.add(event.getRecord());
                 }
             }
+            metrics.recordBatch(
+                    batch.size(),
+                    sourceRecords.size(),
+                    filterStart - pollStart,
+                    System.nanoTime() - filterStart);
+            if (!batch.isEmpty()) {
+                metrics.recordPosition(batch.get(batch.size() - 1).getRecord());
+            }
             List<SourceRecords> sourceRecordsSet = new ArrayList<>();
             sourceRecordsSet.add(new SourceRecords(sourceRecords));
             return sourceRecordsSet.iterator();
@@ -189,6 +204,7 @@ public class BinlogSplitReader implements DebeziumReader<SourceRecords, MySqlSpl
     public void close() {
         try {
             stopBinlogReadTask();
+            metrics.setQueue(null);
             if (statefulTaskContext != null) {
                 statefulTaskContext.close();
             }
@@ -246,30 +262,36 @@ public class BinlogSplitReader implements DebeziumReader<SourceRecords, MySqlSpl
             }
 
             // only the table who captured snapshot splits need to filter
-            if (finishedSplitsInfo.containsKey(tableId)) {
+            FinishedSplitRangeIndex splitRanges = finishedSplitsInfo.get(tableId);
+            if (splitRanges != null) {
                 RowType splitKeyType =
-                        ChunkUtils.getChunkKeyColumnType(
-                                statefulTaskContext.getDatabaseSchema().tableFor(tableId),
-                                statefulTaskContext.getSourceConfig().getChunkKeyColumns(),
-                                statefulTaskContext.getSourceConfig().isTreatTinyInt1AsBoolean());
+                        splitKeyTypes.computeIfAbsent(
+                                tableId,
+                                id ->
+                                        ChunkUtils.getChunkKeyColumnType(
+                                                statefulTaskContext.getDatabaseSchema().tableFor(id),
+                                                statefulTaskContext
+                                                        .getSourceConfig()
+                                                        .getChunkKeyColumns(),
+                                                statefulTaskContext
+                                                        .getSourceConfig()
+                                                        .isTreatTinyInt1AsBoolean()));
 
                 Struct target = RecordUtils.getStructContainsChunkKey(sourceRecord);
                 Object[] chunkKey =
                         RecordUtils.getSplitKey(
                                 splitKeyType, statefulTaskContext.getSchemaNameAdjuster(), target);
-                for (FinishedSnapshotSplitInfo splitInfo : finishedSplitsInfo.get(tableId)) {
-                    if (RecordUtils.splitKeyRangeContains(
-                                    chunkKey, splitInfo.getSplitStart(), splitInfo.getSplitEnd())
-                            && position.isAfter(splitInfo.getHighWatermark())) {
-                        return true;
-                    }
-                }
+                // splits never overlap, so at most one split contains the key
+                FinishedSnapshotSplitInfo splitInfo = splitRanges.find(chunkKey);
+                return splitInfo != null && position.isAfter(splitInfo.getHighWatermark());
             }
             // not in the monitored splits scope, do not emit
             return false;
         } else if (RecordUtils.isSchemaChangeEvent(sourceRecord)) {
             if (RecordUtils.isTableChangeRecord(sourceRecord)) {
                 TableId tableId = RecordUtils.getTableId(sourceRecord);
+                // the chunk key column may have been altered
+                splitKeyTypes.remove(tableId);
                 return capturedTableFilter.test(tableId);
             } else {
                 // Not related to changes in table structure, like `CREATE/DROP DATABASE`, skip it
@@ -325,8 +347,18 @@ public class BinlogSplitReader implements DebeziumReader<SourceRecords, MySqlSpl
                 }
             }
         }
-        this.finishedSplitsInfo = splitsInfoMap;
+        Map<TableId, FinishedSplitRangeIndex> splitRangesMap = new HashMap<>();
+        splitsInfoMap.forEach(
+                (tableId, splits) -> splitRangesMap.put(tableId, new FinishedSplitRangeIndex(splits)));
+        if (!splitRangesMap.isEmpty()) {
+            LOG.info(
+                    "Indexed {} finished snapshot splits of {} tables for binlog filtering",
+                    finishedSplitInfos.size(),
+                    splitRangesMap.size());
+        }
+        this.finishedSplitsInfo = splitRangesMap;
         this.maxSplitHighWatermarkMap = tableIdBinlogPositionMap;
+        this.splitKeyTypes.clear();
         this.pureBinlogPhaseTables.clear();
     }
 
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.cdc.connectors.mysql.debezium.reader;
+
+import org.apache.flink.cdc.connectors.mysql.source.split.FinishedSnapshotSplitInfo;
+import org.apache.flink.cdc.connectors.mysql.source.utils.RecordUtils;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The finished snapshot splits of one table sorted by split start, so that the split containing a
+ * chunk key is found by binary search instead of checking every split.
+ *
+ * <p>Snapshot splits of a table never overlap: the split start is inclusive, the split end is
+ * exclusive and {@code null} means unbounded. Keys are compared through {@link
+ * RecordUtils#splitKeyRangeContains} so the ordering is the same one the splits were built with.
+ */
+class FinishedSplitRangeIndex {
+
+    private final FinishedSnapshotSplitInfo[] splits;
+
+    FinishedSplitRangeIndex(List<FinishedSnapshotSplitInfo> splitInfos) {
+        this.splits = splitInfos.toArray(new FinishedSnapshotSplitInfo[0]);
+        Arrays.sort(
+                splits,
+                (left, right) -> compareSplitStart(left.getSplitStart(), right.getSplitStart()));
+    }
+
+    /** Returns the split whose key range contains the given chunk key, or null if there is none. */
+    @Nullable
+    FinishedSnapshotSplitInfo find(Object[] chunkKey) {
+        int low = 0;
+        int high = splits.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            FinishedSnapshotSplitInfo split = splits[mid];
+            if (RecordUtils.splitKeyRangeContains(
+                    chunkKey, split.getSplitStart(), split.getSplitEnd())) {
+                return split;
+            }
+            if (split.getSplitStart() != null && isBefore(chunkKey, split.getSplitStart())) {
+                high = mid - 1;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return null;
+    }
+
+    int size() {
+        return splits.length;
+    }
+
+    /** Whether the key is strictly less than the bound, i.e. inside the range (-inf, bound). */
+    private static boolean isBefore(Object[] key, Object[] bound) {
+        return RecordUtils.splitKeyRangeContains(key, null, bound);
+    }
+
+    private static int compareSplitStart(@Nullable Object[] left, @Nullable Object[] right) {
+        if (left == null || right == null) {
+            // the first split of a table has no start
+            return left == null ? (right == null ? 0 : -1) : 1;
+        }
+        if (isBefore(left, right)) {
+            return -1;
+        }
+        return isBefore(right, left) ? 1 : 0;
+    }
+}
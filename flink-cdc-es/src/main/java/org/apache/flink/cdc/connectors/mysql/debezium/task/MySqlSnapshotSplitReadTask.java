@@ -235,10 +235,13 @@ public class MySqlSnapshotSplitReadTask
                         snapshotSplit.getSplitStart() == null,
                         snapshotSplit.getSplitEnd() == null);
         LOG.info(
-                "For split '{}' of table {} using select statement: '{}'",
+                "For split '{}' of table {} using select statement: '{}', fetch size {}",
                 snapshotSplit.splitId(),
                 table.id(),
-                selectSql);
+                selectSql,
+                sourceConfig.getFetchSize() == Integer.MIN_VALUE
+                        ? "streaming"
+                        : sourceConfig.getFetchSize());
 
         try (PreparedStatement selectStatement =
                         StatementUtils.readTableSplitDataStatement(
@@ -253,16 +256,23 @@ public class MySqlSnapshotSplitReadTask
                 ResultSet rs = selectStatement.executeQuery()) {
 
             ColumnUtils.ColumnArray columnArray = ColumnUtils.toArray(rs, table);
+            // Resolve the column layout once per split instead of once per row, the loop below
+            // runs for every row of the split.
+            final Column[] resultColumns = columnArray.getColumns();
+            final Column[] actualColumns = table.columns().toArray(new Column[0]);
+            final int rowSize = columnArray.getGreatestColumnPosition();
+            final int[] rowPositions = new int[resultColumns.length];
+            for (int i = 0; i < resultColumns.length; i++) {
+                rowPositions[i] = resultColumns[i].position() - 1;
+            }
             long rows = 0;
             Threads.Timer logTimer = getTableScanLogTimer();
 
             while (rs.next()) {
                 rows++;
-                final Object[] row = new Object[columnArray.getGreatestColumnPosition()];
-                for (int i = 0; i < columnArray.getColumns().length; i++) {
-                    Column actualColumn = table.columns().get(i);
-                    row[columnArray.getColumns()[i].position() - 1] =
-                            readField(rs, i + 1, actualColumn, table);
+                final Object[] row = new Object[rowSize];
+                for (int i = 0; i < rowPositions.length; i++) {
+                    row[rowPositions[i]] = readField(rs, i + 1, actualColumns[i], table);
                 }
                 if (logTimer.expired()) {
                     long stop = clock.currentTimeInMillis();
@@ -281,6 +291,8 @@ public class MySqlSnapshotSplitReadTask
                         getChangeRecordEmitter(snapshotContext, table.id(), row),
                         snapshotReceiver);
             }
+            snapshotChangeEventSourceMetrics.rowsScanned(
+                    snapshotContext.partition, table.id(), rows);
             LOG.info(
                     "Finished exporting {} records for split '{}', total duration '{}'",
                     rows,
@@ -0,0 +1,119 @@
+package com.mall4cloud.sync;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AdaptiveBulkControllerTest {
+
+    @Test
+    void disabledUsesConfiguredLimits() {
+        AdaptiveBulkController controller = new AdaptiveBulkController(false, 0, 1000, 4, 0);
+
+        assertFalse(controller.isEnabled());
+        assertEquals(1000, controller.actionsLimit());
+        assertEquals(4, controller.limiter().limit());
+
+        controller.onResponse(System.nanoTime(), 1000, 60_000, 500);
+        controller.onFailure(System.nanoTime());
+        assertEquals(1000, controller.actionsLimit());
+        assertEquals(4, controller.limiter().limit());
+    }
+
+    @Test
+    void growsActionsFirstThenInFlightRequests() {
+        AdaptiveBulkController controller = new AdaptiveBulkController(true, 10, 40, 3, 1000);
+        assertEquals(10, controller.actionsLimit());
+        assertEquals(1, controller.limiter().limit());
+
+        for (int expected : new int[]{20, 30, 40, 40}) {
+            controller.onResponse(System.nanoTime(), controller.actionsLimit(), 5, 0);
+            assertEquals(expected, controller.actionsLimit());
+        }
+        // 达到最大批次后，每连续成功一轮（当前并发数个响应）增加一个并发请求
+        assertEquals(2, controller.limiter().limit());
+        controller.onResponse(System.nanoTime(), 40, 5, 0);
+        assertEquals(2, controller.limiter().limit());
+        controller.onResponse(System.nanoTime(), 40, 5, 0);
+        assertEquals(3, controller.limiter().limit());
+        for (int i = 0; i < 10; i++) {
+            controller.onResponse(System.nanoTime(), 40, 5, 0);
+        }
+        assertEquals(40, controller.actionsLimit());
+        assertEquals(3, controller.limiter().limit());
+    }
+
+    @Test
+    void smallBatchesDoNotGrow() {
+        AdaptiveBulkController controller = new AdaptiveBulkController(true, 10, 100, 4, 1000);
+        controller.onResponse(System.nanoTime(), 10, 5, 0);
+        assertEquals(20, controller.actionsLimit());
+
+        controller.onResponse(System.nanoTime(), 9, 5, 0);
+        assertEquals(20, controller.actionsLimit());
+    }
+
+    @Test
+    void rejectionsSlowResponsesAndFailuresHalveBothLimits() {
+        AdaptiveBulkController controller = grown(new AdaptiveBulkController(true, 10, 80, 4, 1000));
+        assertEquals(80, controller.actionsLimit());
+        assertEquals(4, controller.limiter().limit());
+
+        controller.onResponse(System.nanoTime(), 80, 5, 3);
+        assertEquals(40, controller.actionsLimit());
+        assertEquals(2, controller.limiter().limit());
+
+        controller.onResponse(System.nanoTime(), 40, 5_000, 0);
+        assertEquals(20, controller.actionsLimit());
+        assertEquals(1, controller.limiter().limit());
+
+        controller.onFailure(System.nanoTime());
+        assertEquals(10, controller.actionsLimit());
+        assertEquals(1, controller.limiter().limit());
+
+        // 不低于最小值
+        controller.onFailure(System.nanoTime());
+        assertEquals(10, controller.actionsLimit());
+        assertEquals(1, controller.limiter().limit());
+    }
+
+    @Test
+    void responsesToRequestsSentBeforeDecreaseAreIgnored() {
+        AdaptiveBulkController controller = grown(new AdaptiveBulkController(true, 10, 80, 4, 1000));
+        long sentBeforeDecrease = System.nanoTime();
+
+        controller.onResponse(System.nanoTime(), 80, 5, 1);
+        assertEquals(40, controller.actionsLimit());
+
+        controller.onResponse(sentBeforeDecrease, 80, 5, 1);
+        controller.onFailure(sentBeforeDecrease);
+        assertEquals(40, controller.actionsLimit());
+        assertEquals(2, controller.limiter().limit());
+    }
+
+    @Test
+    void minActionsIsCappedByMaxActions() {
+        AdaptiveBulkController controller = new AdaptiveBulkController(true, 500, 100, 2, 1000);
+        assertEquals(100, controller.actionsLimit());
+    }
+
+    @Test
+    void rejectsInvalidLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveBulkController(false, 1, 0, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveBulkController(false, 1, 10, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveBulkController(true, 0, 10, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveBulkController(true, 1, 10, 1, 0));
+    }
+
+    /**
+     * 连续的成功响应，直到批次与并发数都达到上限
+     */
+    private static AdaptiveBulkController grown(AdaptiveBulkController controller) {
+        for (int i = 0; i < 100; i++) {
+            controller.onResponse(System.nanoTime(), controller.actionsLimit(), 5, 0);
+        }
+        return controller;
+    }
+}
@@ -0,0 +1,122 @@
+package com.mall4cloud.sync;
+
+import org.apache.flink.cdc.connectors.shaded.org.apache.kafka.connect.data.Schema;
+import org.apache.flink.cdc.connectors.shaded.org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.flink.cdc.connectors.shaded.org.apache.kafka.connect.data.Struct;
+import org.apache.flink.configuration.Configuration;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CdcJsonToChangedDataConverterTest {
+
+    private static final Schema ROW = SchemaBuilder.struct()
+            .field("order_id", Schema.INT64_SCHEMA)
+            .field("status", Schema.OPTIONAL_INT16_SCHEMA)
+            .field("remark", Schema.OPTIONAL_STRING_SCHEMA)
+            .optional()
+            .build();
+
+    private static final Schema SOURCE = SchemaBuilder.struct()
+            .field("db", Schema.STRING_SCHEMA)
+            .field("table", Schema.STRING_SCHEMA)
+            .field("file", Schema.OPTIONAL_STRING_SCHEMA)
+            .field("pos", Schema.OPTIONAL_INT64_SCHEMA)
+            .field("ts_ms", Schema.OPTIONAL_INT64_SCHEMA)
+            .build();
+
+    private static final Schema ENVELOPE = SchemaBuilder.struct()
+            .field("before", ROW)
+            .field("after", ROW)
+            .field("source", SOURCE)
+            .field("op", Schema.STRING_SCHEMA)
+            .build();
+
+    @Test
+    void partialUpdateSendsChangedAndKeyColumns() throws Exception {
+        CdcJsonToChangedDataConverter converter = new CdcJsonToChangedDataConverter(true, true);
+
+        ChangedData data = converter.map(envelope("u", row(1, "a"), row(2, "a")));
+        assertTrue(data.isPartialUpdate());
+        assertEquals("{\"order_id\":7,\"status\":2}", new String(data.getDocument(), StandardCharsets.UTF_8));
+        assertEquals(4L << 32 | 120, data.getVersion());
+
+        assertNull(converter.map(envelope("u", row(1, "a"), row(1, "a"))));
+    }
+
+    @Test
+    void columnSetToNullWritesFullDocument() throws Exception {
+        // 序列化时省略 null 字段，局部更新无法清空 remark，改为写入完整文档
+        ChangedData data = new CdcJsonToChangedDataConverter(true, true)
+                .map(envelope("u", row(1, "a"), row(1, null)));
+
+        assertFalse(data.isPartialUpdate());
+        assertEquals("{\"order_id\":7,\"status\":1}", new String(data.getDocument(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void mapTablesKeepColumnValues() throws Exception {
+        ChangedData mapped = new CdcJsonToChangedDataConverter(true, false,
+                TableFilters.NONE, IndexRouting.NONE, OrderDocumentBuilder.ORDER_TABLES)
+                .map(envelope("c", null, row(1, "a")));
+        assertNull(mapped.getDocument());
+        assertEquals(Map.of("order_id", 7L, "status", (short) 1, "remark", "a"), mapped.getData());
+
+        // 其它表不受影响，仍直接序列化
+        ChangedData direct = new CdcJsonToChangedDataConverter(true, false,
+                TableFilters.NONE, IndexRouting.NONE, Set.of(OrderDocumentBuilder.ORDER_ITEM_TABLE))
+                .map(envelope("c", null, row(1, "a")));
+        assertNull(direct.getData());
+        assertEquals("{\"order_id\":7,\"status\":1,\"remark\":\"a\"}",
+                new String(direct.getDocument(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void snapshotRowsHaveNoVersion() throws Exception {
+        ChangedData data = new CdcJsonToChangedDataConverter().map(envelope("r", null, row(1, "a")));
+
+        assertFalse(data.hasVersion());
+        assertEquals(4L, CdcJsonToChangedDataConverter.binlogFileIndex("mysql-bin.000004"));
+    }
+
+    @Test
+    void filteredSnapshotRowsAreDeletedWithoutVersion() throws Exception {
+        TableFilters filters = TableFilters.fromConfiguration(Configuration.fromMap(Map.of(
+                SyncOptions.DENORMALIZE_ORDERS.key(), "true",
+                SyncOptions.FILTER_ROWS_PREFIX + "order", "status=1")));
+        CdcJsonToChangedDataConverter converter = new CdcJsonToChangedDataConverter(true, true,
+                filters, IndexRouting.NONE, Set.of());
+
+        // 快照中被过滤的订单转换为删除，但仍不带版本号与提交时间，不会覆盖 binlog 中的真实变更
+        ChangedData snapshot = converter.map(envelope("r", null, row(2, "a")));
+        assertEquals("d", snapshot.getOperation());
+        assertFalse(snapshot.hasVersion());
+        assertFalse(snapshot.hasSourceTimestamp());
+
+        ChangedData update = converter.map(envelope("u", row(1, "a"), row(2, "a")));
+        assertEquals("d", update.getOperation());
+        assertEquals(4L << 32 | 120, update.getVersion());
+        assertTrue(update.hasSourceTimestamp());
+    }
+
+    private static Struct row(int status, String remark) {
+        return new Struct(ROW).put("order_id", 7L).put("status", (short) status).put("remark", remark);
+    }
+
+    private static Struct envelope(String op, Struct before, Struct after) {
+        Struct source = new Struct(SOURCE)
+                .put("db", "mall4cloud_order")
+                .put("table", "order")
+                .put("file", "mysql-bin.000004")
+                .put("pos", 120L)
+                .put("ts_ms", 1700000000000L);
+        return new Struct(ENVELOPE).put("before", before).put("after", after).put("source", source).put("op", op);
+    }
+}
@@ -0,0 +1,136 @@
+package com.mall4cloud.sync;
+
+import org.apache.flink.core.memory.DataInputDeserializer;
+import org.apache.flink.core.memory.DataOutputSerializer;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChangedDataSerializerTest {
+
+    @Test
+    void roundTripsIndexRoutingAndFlags() throws Exception {
+        ChangedData record = new ChangedData("u", "mall4cloud_order", "order", "order_id", "7", null);
+        record.setDocument("{\"order_id\":7,\"status\":2}".getBytes(StandardCharsets.UTF_8));
+        record.setBinlogFile("mysql-bin.000004");
+        record.setBinlogPosition(120L);
+        record.setVersion(4L << 32 | 120);
+        record.setPartialUpdate(true);
+        record.setSourceTimestamp(1700000000000L);
+        record.setIndex("order-2025.01");
+        record.setRouting("42");
+
+        ChangedData copy = roundTrip(record);
+        assertSameRecord(record, copy);
+        assertSameRecord(record, ChangedDataSerializer.INSTANCE.copy(record));
+    }
+
+    @Test
+    void roundTripsWithoutOptionalFields() throws Exception {
+        // 快照数据：没有版本号、提交时间、索引与路由，表名与主键名不在字典中
+        ChangedData record = new ChangedData("r", "mall4cloud_order", "order_refund", "refund_id", "9",
+                new HashMap<>(Map.of("refund_id", 9L)));
+
+        ChangedData copy = roundTrip(record);
+        assertSameRecord(record, copy);
+        assertFalse(copy.hasVersion());
+        assertFalse(copy.hasSourceTimestamp());
+        assertFalse(copy.isPartialUpdate());
+        assertNull(copy.getIndex());
+        assertNull(copy.getRouting());
+        assertNull(copy.getDocument());
+    }
+
+    @Test
+    void roundTripsColumnValuesOfEveryType() throws Exception {
+        Map<String, Object> address = new HashMap<>();
+        address.put("order_addr_id", 3L);
+        address.put("province", "广东省");
+        Map<String, Object> data = new HashMap<>();
+        data.put("order_id", 7L);
+        data.put("status", 2);
+        data.put("type", (short) 1);
+        data.put("flag", (byte) 1);
+        data.put("is_payed", true);
+        data.put("ratio", 0.5d);
+        data.put("weight", 1.5f);
+        data.put("total", new BigDecimal("-12.30"));
+        data.put("sign", new byte[]{1, 2, 3});
+        data.put("create_time", new Date(1700000000123L));
+        data.put("remark", null);
+        data.put("order_addr", address);
+        data.put("order_items", List.of(Map.of("order_item_id", 5L), Map.of("order_item_id", 6L)));
+        ChangedData record = new ChangedData("c", "mall4cloud_order", "orders", "order_id", "7", data);
+
+        ChangedData copy = roundTrip(record);
+        Map<String, Object> values = copy.getData();
+        assertArrayEquals((byte[]) data.get("sign"), (byte[]) values.get("sign"));
+        values.remove("sign");
+        data.remove("sign");
+        assertEquals(data, values);
+        assertEquals(new BigDecimal("-12.30").scale(), ((BigDecimal) values.get("total")).scale());
+    }
+
+    @Test
+    void copyDoesNotShareMutableValues() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("sign", new byte[]{1});
+        data.put("order_addr", new HashMap<>(Map.of("province", "广东省")));
+        ChangedData record = new ChangedData("c", "mall4cloud_order", "orders", "order_id", "7", data);
+        record.setDocument(new byte[]{2});
+
+        ChangedData copy = ChangedDataSerializer.INSTANCE.copy(record);
+        assertNotSame(record.getDocument(), copy.getDocument());
+        assertNotSame(data.get("sign"), copy.getData().get("sign"));
+        assertNotSame(data.get("order_addr"), copy.getData().get("order_addr"));
+        assertEquals(data.get("order_addr"), copy.getData().get("order_addr"));
+    }
+
+    private static ChangedData roundTrip(ChangedData record) throws Exception {
+        DataOutputSerializer out = new DataOutputSerializer(64);
+        ChangedDataSerializer.INSTANCE.serialize(record, out);
+        DataInputDeserializer in = new DataInputDeserializer(out.getCopyOfBuffer());
+        ChangedData copy = ChangedDataSerializer.INSTANCE.deserialize(in);
+        assertEquals(0, in.available());
+
+        // copy(DataInputView, DataOutputView) 与反序列化后再序列化得到相同的字节
+        DataOutputSerializer copied = new DataOutputSerializer(64);
+        ChangedDataSerializer.INSTANCE.copy(new DataInputDeserializer(out.getCopyOfBuffer()), copied);
+        DataOutputSerializer reserialized = new DataOutputSerializer(64);
+        ChangedDataSerializer.INSTANCE.serialize(copy, reserialized);
+        assertArrayEquals(reserialized.getCopyOfBuffer(), copied.getCopyOfBuffer());
+        return copy;
+    }
+
+    private static void assertSameRecord(ChangedData expected, ChangedData actual) {
+        assertEquals(expected.getOperation(), actual.getOperation());
+        assertEquals(expected.getDatabase(), actual.getDatabase());
+        assertEquals(expected.getTable(), actual.getTable());
+        assertEquals(expected.getPrimaryKeyName(), actual.getPrimaryKeyName());
+        assertEquals(expected.getPrimaryKeyValue(), actual.getPrimaryKeyValue());
+        assertEquals(expected.getBinlogFile(), actual.getBinlogFile());
+        assertEquals(expected.getBinlogPosition(), actual.getBinlogPosition());
+        assertEquals(expected.hasVersion(), actual.hasVersion());
+        assertEquals(expected.getVersion(), actual.getVersion());
+        assertEquals(expected.isPartialUpdate(), actual.isPartialUpdate());
+        assertEquals(expected.hasSourceTimestamp(), actual.hasSourceTimestamp());
+        assertEquals(expected.getSourceTimestamp(), actual.getSourceTimestamp());
+        assertEquals(expected.getIndex(), actual.getIndex());
+        assertEquals(expected.getRouting(), actual.getRouting());
+        assertArrayEquals(expected.getDocument(), actual.getDocument());
+        assertEquals(expected.getData(), actual.getData());
+        assertTrue(expected.getData() == null || expected.getData() != actual.getData());
+    }
+}
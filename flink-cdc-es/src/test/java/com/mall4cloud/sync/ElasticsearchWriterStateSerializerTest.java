@@ -0,0 +1,102 @@
+package com.mall4cloud.sync;
+
+import com.mall4cloud.sync.ElasticSearchBulkWriter.BulkOperation;
+import com.mall4cloud.sync.ElasticSearchBulkWriter.BulkOperationType;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ElasticsearchWriterStateSerializerTest {
+
+    private static final ElasticsearchWriterStateSerializer SERIALIZER = ElasticsearchWriterStateSerializer.INSTANCE;
+
+    @Test
+    void roundTripsEveryOperationKind() throws Exception {
+        byte[] document = "{\"order_id\":7,\"status\":2}".getBytes(StandardCharsets.UTF_8);
+        Map<String, Object> orders = Map.of("order_id", 8L, "total", new BigDecimal("12.30"),
+                "order_items", List.of(Map.of("order_item_id", 5L)));
+        List<BulkOperation> operations = List.of(
+                new BulkOperation(BulkOperationType.INDEX, "order-2025.01", "7", "42", document, 4L << 32 | 120,
+                        document.length, "order", 1700000000000L),
+                new BulkOperation(BulkOperationType.UPDATE, "order-2025.01", "7", null, document, null,
+                        document.length, "order", 1700000000001L),
+                new BulkOperation(BulkOperationType.INDEX, "orders", "8", "42", orders, null,
+                        64, "orders", 0L),
+                new BulkOperation(BulkOperationType.DELETE, "order_item", "5", null, null, 4L << 32 | 200,
+                        16, "order_item", 1700000000002L));
+
+        ElasticsearchWriterState state = roundTrip(new ElasticsearchWriterState(2, 4, operations));
+        assertEquals(2, state.subtaskIndex());
+        assertEquals(4, state.parallelism());
+        List<BulkOperation> restored = state.operations();
+
+        assertEquals(operations.size(), restored.size());
+        for (int i = 0; i < operations.size(); i++) {
+            BulkOperation expected = operations.get(i);
+            BulkOperation actual = restored.get(i);
+            assertEquals(expected.type(), actual.type());
+            assertEquals(expected.index(), actual.index());
+            assertEquals(expected.id(), actual.id());
+            assertEquals(expected.routing(), actual.routing());
+            assertEquals(expected.version(), actual.version());
+            assertEquals(expected.sizeInBytes(), actual.sizeInBytes());
+            assertEquals(expected.table(), actual.table());
+            assertEquals(expected.sourceTimestamp(), actual.sourceTimestamp());
+        }
+        assertArrayEquals(document, (byte[]) restored.get(0).data());
+        assertArrayEquals(document, (byte[]) restored.get(1).data());
+        assertEquals(orders, restored.get(2).data());
+        assertNull(restored.get(3).data());
+    }
+
+    @Test
+    void roundTripsEmptyState() throws Exception {
+        assertEquals(List.of(), roundTrip(new ElasticsearchWriterState(0, 1, List.of())).operations());
+    }
+
+    @Test
+    void readsVersionOneStateWithoutSubtask() throws Exception {
+        BulkOperation delete = new BulkOperation(BulkOperationType.DELETE, "order", "7", null, null, 5L,
+                16, "order", 0L);
+        byte[] serialized = SERIALIZER.serialize(new ElasticsearchWriterState(3, 4, List.of(delete)));
+        // 版本 1 的编码没有开头的 subtask 序号与并行度
+        byte[] versionOne = Arrays.copyOfRange(serialized, 8, serialized.length);
+
+        ElasticsearchWriterState state = SERIALIZER.deserialize(1, versionOne);
+        assertEquals(ElasticsearchWriterState.UNKNOWN, state.parallelism());
+        assertEquals("7", state.operations().get(0).id());
+        assertTrue(state.writtenBy(0, 8));
+    }
+
+    @Test
+    void stateIsWrittenBySameSubtaskAndParallelismOnly() {
+        ElasticsearchWriterState state = new ElasticsearchWriterState(1, 4, List.of());
+
+        assertTrue(state.writtenBy(1, 4));
+        assertFalse(state.writtenBy(1, 8));
+        assertFalse(state.writtenBy(2, 4));
+    }
+
+    @Test
+    void rejectsUnknownVersion() throws Exception {
+        byte[] serialized = SERIALIZER.serialize(new ElasticsearchWriterState(0, 1, List.of()));
+
+        assertThrows(IOException.class, () -> SERIALIZER.deserialize(SERIALIZER.getVersion() + 1, serialized));
+    }
+
+    private static ElasticsearchWriterState roundTrip(ElasticsearchWriterState state) throws IOException {
+        return SERIALIZER.deserialize(SERIALIZER.getVersion(), SERIALIZER.serialize(state));
+    }
+}
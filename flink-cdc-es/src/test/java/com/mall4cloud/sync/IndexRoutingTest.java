@@ -0,0 +1,128 @@
+package com.mall4cloud.sync;
+
+import com.mall4cloud.sync.IndexRouting.Part;
+import com.mall4cloud.sync.IndexRouting.Rule;
+import io.debezium.time.MicroTimestamp;
+import io.debezium.time.ZonedTimestamp;
+import org.apache.flink.cdc.connectors.shaded.org.apache.kafka.connect.data.Schema;
+import org.apache.flink.cdc.connectors.shaded.org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.flink.cdc.connectors.shaded.org.apache.kafka.connect.data.Struct;
+import org.apache.flink.configuration.Configuration;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IndexRoutingTest {
+
+    private static final Schema ORDER = SchemaBuilder.struct()
+            .name("mall4cloud_order.order.Value")
+            .field("order_id", Schema.INT64_SCHEMA)
+            .field("user_id", Schema.OPTIONAL_INT64_SCHEMA)
+            .field("shop_code", Schema.OPTIONAL_STRING_SCHEMA)
+            .field("create_time", MicroTimestamp.builder().optional().build())
+            .field("pay_time", ZonedTimestamp.builder().optional().build())
+            .field("status", Schema.OPTIONAL_INT32_SCHEMA)
+            .build();
+
+    @Test
+    void parsesLiteralsAndPlaceholders() {
+        assertEquals(List.of(Part.literal("order")), IndexRouting.parseTemplate("order"));
+        assertEquals(List.of(Part.literal("order-"), new Part(null, "create_time", "yyyy.MM")),
+                IndexRouting.parseTemplate("order-{create_time:yyyy.MM}"));
+        assertEquals(List.of(Part.literal("order-"), new Part(null, "shop_code", null),
+                        Part.literal("-"), new Part(null, "create_time", "yyyy"), Part.literal(".v1")),
+                IndexRouting.parseTemplate("order-{ shop_code }-{create_time:yyyy}.v1"));
+    }
+
+    @Test
+    void rejectsInvalidTemplates() {
+        assertThrows(IllegalArgumentException.class, () -> IndexRouting.parseTemplate("order-{create_time"));
+        assertThrows(IllegalArgumentException.class, () -> IndexRouting.parseTemplate("order-{}"));
+        assertThrows(IllegalArgumentException.class, () -> IndexRouting.parseTemplate("order-{:yyyy}"));
+        assertThrows(IllegalArgumentException.class, () -> IndexRouting.parseTemplate("order-{create_time:yyyy.bb}"));
+        // 必须以固定的前缀开头，别名与索引名不能只由列值决定
+        assertThrows(IllegalArgumentException.class, () -> IndexRouting.parseTemplate("{shop_code}-order"));
+        assertThrows(IllegalArgumentException.class, () -> IndexRouting.parseTemplate(""));
+        assertThrows(IllegalArgumentException.class, () -> IndexRouting.parseTemplate("Order-{shop_code}"));
+        assertThrows(IllegalArgumentException.class, () -> IndexRouting.parseTemplate("order {shop_code}"));
+    }
+
+    @Test
+    void computesIndexAndRoutingFromRow() {
+        Rule rule = IndexRouting.fromConfiguration(Configuration.fromMap(Map.of(
+                "es.index.name.order", "order-{create_time:yyyy.MM}-{shop_code}",
+                "es.index.routing.order", "user_id"))).rule("order");
+        Struct row = new Struct(ORDER)
+                .put("order_id", 7L)
+                .put("user_id", 42L)
+                .put("shop_code", "SZ")
+                .put("create_time", LocalDateTime.of(2025, 1, 31, 23, 59).toEpochSecond(ZoneOffset.UTC) * 1_000_000L);
+
+        assertEquals("order-2025.01-sz", rule.index(row, rule.templateFields(ORDER)));
+        assertEquals("42", rule.routing(row, rule.routingField(ORDER)));
+
+        // 列值为 null 时使用固定的替代值，没有路由值时按 ID 路由
+        Struct empty = new Struct(ORDER).put("order_id", 8L);
+        assertEquals("order-none-none", rule.index(empty, rule.templateFields(ORDER)));
+        assertNull(rule.routing(empty, rule.routingField(ORDER)));
+    }
+
+    @Test
+    void formatsZonedTimestampInServerTimeZone() {
+        Rule rule = IndexRouting.fromConfiguration(Configuration.fromMap(Map.of(
+                "mysql.server-time-zone", "Asia/Shanghai",
+                "es.index.name.order", "order-{pay_time:yyyy.MM.dd}"))).rule("order");
+        Struct row = new Struct(ORDER).put("order_id", 7L).put("pay_time", "2025-01-31T16:30:00Z");
+
+        assertEquals("order-2025.02.01", rule.index(row, rule.templateFields(ORDER)));
+    }
+
+    @Test
+    void rejectsUnknownColumnsAndNonTemporalFormats() {
+        IndexRouting routing = IndexRouting.fromConfiguration(Configuration.fromMap(Map.of(
+                "es.index.name.order", "order-{create_at:yyyy}",
+                "es.index.name.order_item", "order_item-{status:yyyy}",
+                "es.index.routing.order_addr", "user")));
+        Struct row = new Struct(ORDER).put("order_id", 7L).put("status", 1);
+
+        assertThrows(IllegalArgumentException.class, () -> routing.rule("order").templateFields(ORDER));
+        assertThrows(IllegalArgumentException.class, () -> routing.rule("order_addr").routingField(ORDER));
+        Rule rule = routing.rule("order_item");
+        assertThrows(IllegalArgumentException.class, () -> rule.index(row, rule.templateFields(ORDER)));
+    }
+
+    @Test
+    void renamedAliasesOnlyIncludeTemplatedIndices() {
+        IndexRouting routing = IndexRouting.fromConfiguration(Configuration.fromMap(Map.of(
+                "es.index.name.order", "order-{create_time:yyyy.MM}",
+                "es.index.name.order_item", "order_item",
+                "es.index.routing.order_addr", "user_id")));
+
+        assertEquals(Set.of("order"), routing.renamedAliases());
+        assertTrue(routing.renamesIndices());
+        assertFalse(IndexRouting.NONE.renamesIndices());
+    }
+
+    @Test
+    void ordersRulesApplyToOrderRowsWhenDenormalized() {
+        IndexRouting routing = IndexRouting.fromConfiguration(Configuration.fromMap(Map.of(
+                "sync.orders.denormalize", "true",
+                "es.index.name.orders", "orders-{create_time:yyyy}")));
+        assertEquals("orders", routing.rule("order").alias());
+        assertEquals(Set.of("orders"), routing.renamedAliases());
+
+        assertThrows(IllegalArgumentException.class, () -> IndexRouting.fromConfiguration(Configuration.fromMap(Map.of(
+                "sync.orders.denormalize", "true",
+                "es.index.routing.order_item", "user_id"))));
+    }
+}
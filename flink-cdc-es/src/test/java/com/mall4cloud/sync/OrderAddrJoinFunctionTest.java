@@ -0,0 +1,137 @@
+package com.mall4cloud.sync;
+
+import org.apache.flink.api.common.typeinfo.Types;
+import org.apache.flink.api.java.functions.KeySelector;
+import org.apache.flink.streaming.api.functions.KeyedProcessFunction;
+import org.apache.flink.streaming.api.operators.KeyedProcessOperator;
+import org.apache.flink.streaming.util.KeyedOneInputStreamOperatorTestHarness;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class OrderAddrJoinFunctionTest {
+
+    private KeyedOneInputStreamOperatorTestHarness<String, ChangedData, ChangedData> tracker;
+    private KeyedOneInputStreamOperatorTestHarness<String, ChangedData, ChangedData> join;
+    private int trackerOutputs;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        tracker = harness(new OrderAddrReferenceTracker(), OrderDocumentBuilder::orderKey);
+        join = harness(new OrderAddrJoinFunction(), OrderAddrJoinFunction::addrKey);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        tracker.close();
+        join.close();
+    }
+
+    @Test
+    void reassignedOrderIsRemovedFromOldAddress() throws Exception {
+        assertEquals(List.of(), addr("c", 1, "广州"));
+        assertEquals(List.of("7:广州"), order("c", 7, 1L));
+
+        // 订单改为引用地址 2，地址 1 之后的变更不再写入该订单
+        assertEquals(List.of(), order("u", 7, 2L));
+        assertEquals(List.of(), addr("u", 1, "深圳"));
+        assertEquals(List.of("7:佛山"), addr("c", 2, "佛山"));
+
+        // 改回地址 1 时补写地址 1 的当前内容
+        assertEquals(List.of("7:深圳"), order("u", 7, 1L));
+        assertEquals(List.of(), addr("u", 2, "东莞"));
+    }
+
+    @Test
+    void clearedAddressIdAndDeleteRemoveTheReference() throws Exception {
+        addr("c", 1, "广州");
+        addr("c", 2, "佛山");
+        order("c", 7, 1L);
+        order("c", 8, 2L);
+
+        assertEquals(List.of(), order("u", 7, null));
+        assertEquals(List.of(), addr("u", 1, "深圳"));
+
+        // 被行过滤转换而来的删除带的是更新后的行，仍从记录下的地址 2 移除
+        assertEquals(List.of(), order("d", 8, 3L));
+        assertEquals(List.of(), addr("u", 2, "东莞"));
+    }
+
+    @Test
+    void partialUpdatesWithoutAddressIdAreNotTracked() {
+        ChangedData partial = new ChangedData("u", "mall4cloud_order", OrderDocumentBuilder.ORDER_TABLE,
+                OrderDocumentBuilder.ORDER_ID, "7", new HashMap<>(Map.of("status", 2)));
+        partial.setPartialUpdate(true);
+
+        assertFalse(OrderAddrReferenceTracker.isTracked(partial));
+    }
+
+    /**
+     * 订单行先经过 OrderAddrReferenceTracker，再按 order_addr_id 交给 OrderAddrJoinFunction，返回生成的收货地址文档
+     */
+    private List<String> order(String op, long orderId, Long addrId) throws Exception {
+        Map<String, Object> data = new HashMap<>();
+        data.put(OrderDocumentBuilder.ORDER_ID, orderId);
+        data.put(OrderAddrJoinFunction.ORDER_ADDR_ID, addrId);
+        ChangedData row = new ChangedData(op, "mall4cloud_order", OrderDocumentBuilder.ORDER_TABLE,
+                OrderDocumentBuilder.ORDER_ID, String.valueOf(orderId), data);
+        if (!OrderAddrReferenceTracker.isTracked(row)) {
+            return List.of();
+        }
+        tracker.processElement(row, 0L);
+        List<ChangedData> references = tracker.extractOutputValues();
+        List<ChangedData> emitted = references.subList(trackerOutputs, references.size());
+        trackerOutputs = references.size();
+
+        int before = join.extractOutputValues().size();
+        for (ChangedData reference : emitted) {
+            if (OrderAddrJoinFunction.hasAddrKey(reference)) {
+                join.processElement(reference, 0L);
+            }
+        }
+        return addrDocuments(before);
+    }
+
+    private List<String> addr(String op, long addrId, String city) throws Exception {
+        Map<String, Object> data = new HashMap<>();
+        data.put(OrderAddrJoinFunction.ORDER_ADDR_ID, addrId);
+        data.put("city", city);
+        int before = join.extractOutputValues().size();
+        join.processElement(new ChangedData(op, "mall4cloud_order", OrderDocumentBuilder.ORDER_ADDR_TABLE,
+                OrderAddrJoinFunction.ORDER_ADDR_ID, String.valueOf(addrId), data), 0L);
+        return addrDocuments(before);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> addrDocuments(int from) {
+        List<ChangedData> output = join.extractOutputValues();
+        List<String> documents = new ArrayList<>();
+        for (ChangedData document : output.subList(from, output.size())) {
+            Map<String, Object> addr = (Map<String, Object>) document.getData().get("addr");
+            documents.add(document.getPrimaryKeyValue() + ":" + addr.get("city"));
+        }
+        return documents;
+    }
+
+    /**
+     * 输出使用 ChangedDataSerializer，与作业中一致，不经过 Kryo
+     */
+    private static KeyedOneInputStreamOperatorTestHarness<String, ChangedData, ChangedData> harness(
+            KeyedProcessFunction<String, ChangedData, ChangedData> function,
+            KeySelector<ChangedData, String> keySelector) throws Exception {
+        KeyedOneInputStreamOperatorTestHarness<String, ChangedData, ChangedData> harness =
+                new KeyedOneInputStreamOperatorTestHarness<>(new KeyedProcessOperator<>(function), keySelector,
+                        Types.STRING);
+        harness.setup(ChangedDataSerializer.INSTANCE);
+        harness.open();
+        return harness;
+    }
+}
@@ -0,0 +1,102 @@
+package com.mall4cloud.sync;
+
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import io.debezium.time.Date;
+import io.debezium.time.MicroTimestamp;
+import io.debezium.time.NanoTimestamp;
+import io.debezium.time.Timestamp;
+import io.debezium.time.ZonedTimestamp;
+import jakarta.json.stream.JsonGenerator;
+import org.apache.flink.cdc.connectors.shaded.org.apache.kafka.connect.data.Decimal;
+import org.apache.flink.cdc.connectors.shaded.org.apache.kafka.connect.data.Field;
+import org.apache.flink.cdc.connectors.shaded.org.apache.kafka.connect.data.Schema;
+import org.apache.flink.cdc.connectors.shaded.org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.flink.cdc.connectors.shaded.org.apache.kafka.connect.data.Struct;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StructJsonSerializerTest {
+
+    private static final Schema ROW = SchemaBuilder.struct()
+            .field("order_id", Schema.INT64_SCHEMA)
+            .field("status", Schema.OPTIONAL_INT16_SCHEMA)
+            .field("shop_name", Schema.OPTIONAL_STRING_SCHEMA)
+            .field("remark", Schema.OPTIONAL_STRING_SCHEMA)
+            .field("total", Decimal.builder(2).optional().build())
+            .field("ratio", Schema.OPTIONAL_FLOAT64_SCHEMA)
+            .field("paid", Schema.OPTIONAL_BOOLEAN_SCHEMA)
+            .field("sign", Schema.OPTIONAL_BYTES_SCHEMA)
+            .field("pay_date", Date.builder().optional().build())
+            .field("create_time", Timestamp.builder().optional().build())
+            .field("update_time", MicroTimestamp.builder().optional().build())
+            .field("deliver_time", NanoTimestamp.builder().optional().build())
+            .field("finish_time", ZonedTimestamp.builder().optional().build())
+            .build();
+
+    private static final StructJsonSerializer.Layout LAYOUT =
+            new StructJsonSerializer.Layout(ROW.fields().toArray(new Field[0]));
+
+    @Test
+    void matchesMapSerialization() throws Exception {
+        Struct row = new Struct(ROW)
+                .put("order_id", 7L)
+                .put("status", (short) 2)
+                .put("shop_name", "店铺\"1\"")
+                .put("total", new BigDecimal("12.30"))
+                .put("ratio", 0.5)
+                .put("paid", true)
+                .put("sign", ByteBuffer.wrap(new byte[]{1, 2, 3}))
+                .put("pay_date", 19000)
+                .put("create_time", 1700000000123L)
+                .put("update_time", 1700000000123456L)
+                .put("deliver_time", 1700000000123456789L)
+                .put("finish_time", "2023-11-14T22:13:20Z");
+
+        assertEquals(mapJson(row, ROW.fields().stream().mapToInt(Field::index).toArray()),
+                new String(new StructJsonSerializer().serialize(row, LAYOUT), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void omitsNullFieldsLikeMapSerialization() throws Exception {
+        Struct row = new Struct(ROW).put("order_id", 7L).put("status", (short) 1);
+
+        String json = new String(new StructJsonSerializer().serialize(row, LAYOUT), StandardCharsets.UTF_8);
+        assertEquals("{\"order_id\":7,\"status\":1}", json);
+        assertEquals(mapJson(row, ROW.fields().stream().mapToInt(Field::index).toArray()), json);
+    }
+
+    @Test
+    void serializesSelectedFields() throws Exception {
+        Struct row = new Struct(ROW).put("order_id", 7L).put("status", (short) 3).put("pay_date", 19000);
+        int[] fields = {0, 1, 8};
+
+        String json = new String(new StructJsonSerializer().serialize(row, LAYOUT, fields), StandardCharsets.UTF_8);
+        assertEquals("{\"order_id\":7,\"status\":3,\"pay_date\":19000}", json);
+        assertEquals(mapJson(row, fields), json);
+    }
+
+    /**
+     * Map 模式下 sink 写入的文档：由 Elasticsearch 客户端的 JacksonJsonpMapper 序列化
+     */
+    private static String mapJson(Struct row, int[] fieldIndexes) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (int i : fieldIndexes) {
+            Field field = ROW.fields().get(i);
+            map.put(field.name(), row.get(field));
+        }
+        JacksonJsonpMapper mapper = new JacksonJsonpMapper();
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = mapper.jsonProvider().createGenerator(writer)) {
+            mapper.serialize(map, generator);
+        }
+        return writer.toString();
+    }
+}
@@ -0,0 +1,76 @@
+package com.mall4cloud.sync;
+
+import org.apache.flink.configuration.Configuration;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TableFiltersTest {
+
+    @Test
+    void defaultsOnlyExcludeUndoLog() {
+        TableFilters filters = TableFilters.fromConfiguration(Configuration.fromMap(
+                Map.of(SyncOptions.DENORMALIZE_ORDERS.key(), "false")));
+
+        assertTrue(filters.isExcluded("undo_log"));
+        assertFalse(filters.isExcluded("order"));
+        assertEquals(List.of(), filters.rowConditions("order"));
+        assertNull(filters.includedColumns("order"));
+        assertFalse(filters.deletesFilteredRows("order"));
+    }
+
+    @Test
+    void parsesPerTableColumnsAndRows() {
+        TableFilters filters = TableFilters.fromConfiguration(Configuration.fromMap(Map.of(
+                SyncOptions.FILTER_EXCLUDE_TABLES.key(), "undo_log;tmp_a, tmp_b",
+                SyncOptions.FILTER_COLUMNS_PREFIX + "order_item", "order_item_id, spu_name,,count",
+                SyncOptions.FILTER_ROWS_PREFIX + "order", "delete_status!=2, status=1")));
+
+        assertTrue(filters.isExcluded("tmp_a"));
+        assertTrue(filters.isExcluded("tmp_b"));
+        assertEquals(List.of("order_item_id", "spu_name", "count"), List.copyOf(filters.includedColumns("order_item")));
+        assertEquals(List.of(new TableFilters.Condition("delete_status", "2", true),
+                new TableFilters.Condition("status", "1", false)), filters.rowConditions("order"));
+    }
+
+    @Test
+    void deletesFilteredOrdersWhenDenormalizing() {
+        TableFilters filters = TableFilters.fromConfiguration(Configuration.fromMap(
+                Map.of(SyncOptions.DENORMALIZE_ORDERS.key(), "true")));
+
+        assertTrue(filters.deletesFilteredRows(OrderDocumentBuilder.ORDER_TABLE));
+        assertFalse(filters.deletesFilteredRows(OrderDocumentBuilder.ORDER_ITEM_TABLE));
+    }
+
+    @Test
+    void conditionsCompareAsStrings() {
+        TableFilters.Condition notDeleted = new TableFilters.Condition("delete_status", "2", true);
+        assertTrue(notDeleted.test(0));
+        assertFalse(notDeleted.test(2));
+        assertFalse(notDeleted.test("2"));
+        assertTrue(notDeleted.test(null));
+
+        TableFilters.Condition isNull = TableFilters.parseConditions("remark=null").get(0);
+        assertTrue(isNull.test(null));
+    }
+
+    @Test
+    void rejectsConditionWithoutOperator() {
+        assertThrows(IllegalArgumentException.class, () -> TableFilters.parseConditions("delete_status"));
+        assertThrows(IllegalArgumentException.class, () -> TableFilters.parseConditions("=2"));
+    }
+
+    @Test
+    void noneFiltersNothing() {
+        assertFalse(TableFilters.NONE.isExcluded("undo_log"));
+        assertEquals(List.of(), TableFilters.NONE.rowConditions("order"));
+        assertFalse(TableFilters.NONE.deletesFilteredRows("order"));
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.flink.cdc.connectors.mysql.debezium.reader;
+
+import org.apache.flink.cdc.connectors.mysql.source.split.FinishedSnapshotSplitInfo;
+import org.apache.flink.cdc.connectors.mysql.source.utils.RecordUtils;
+
+import io.debezium.relational.TableId;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/** Compares {@link FinishedSplitRangeIndex} with the linear scan it replaced in BinlogSplitReader. */
+class FinishedSplitRangeIndexTest {
+
+    private static final TableId TABLE = new TableId("mall4cloud_order", null, "order_item");
+
+    @Test
+    void findsSplitsWithUnboundedFirstAndLastSplit() {
+        List<FinishedSnapshotSplitInfo> ordered = splits(100L, 200L, 300L);
+        List<FinishedSnapshotSplitInfo> splits = new ArrayList<>(ordered);
+        Collections.shuffle(splits, new Random(1));
+        FinishedSplitRangeIndex index = new FinishedSplitRangeIndex(splits);
+
+        for (long key = -10; key <= 410; key++) {
+            assertFindsSameSplit(splits, index, key);
+        }
+        // the split start is inclusive and the split end is exclusive
+        assertSame(ordered.get(0), index.find(new Object[] {99L}));
+        assertSame(ordered.get(1), index.find(new Object[] {100L}));
+        assertSame(ordered.get(3), index.find(new Object[] {300L}));
+    }
+
+    @Test
+    void singleUnboundedSplitContainsEveryKey() {
+        List<FinishedSnapshotSplitInfo> splits = splits();
+        FinishedSplitRangeIndex index = new FinishedSplitRangeIndex(splits);
+
+        assertSame(splits.get(0), index.find(new Object[] {Long.MIN_VALUE}));
+        assertSame(splits.get(0), index.find(new Object[] {Long.MAX_VALUE}));
+    }
+
+    @Test
+    void keysOfUnfinishedSplitsAreNotFound() {
+        List<FinishedSnapshotSplitInfo> all = splits(100L, 200L, 300L);
+        // only the first and the third split have finished
+        List<FinishedSnapshotSplitInfo> finished = List.of(all.get(2), all.get(0));
+        FinishedSplitRangeIndex index = new FinishedSplitRangeIndex(finished);
+
+        for (long key = -10; key <= 410; key++) {
+            assertFindsSameSplit(finished, index, key);
+        }
+        assertNull(index.find(new Object[] {150L}));
+        assertNull(index.find(new Object[] {300L}));
+        assertNull(new FinishedSplitRangeIndex(List.of()).find(new Object[] {1L}));
+    }
+
+    @Test
+    void stringKeys() {
+        List<FinishedSnapshotSplitInfo> splits = new ArrayList<>();
+        splits.add(split(0, null, new Object[] {"h"}));
+        splits.add(split(1, new Object[] {"h"}, new Object[] {"p"}));
+        splits.add(split(2, new Object[] {"p"}, null));
+        FinishedSplitRangeIndex index = new FinishedSplitRangeIndex(splits);
+
+        for (String key : List.of("", "a", "g", "gz", "h", "ha", "o", "p", "pa", "z")) {
+            assertSame(linearFind(splits, new Object[] {key}), index.find(new Object[] {key}), key);
+        }
+    }
+
+    @Test
+    void matchesLinearScanForRandomSplits() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            TreeSet<Long> bounds = new TreeSet<>();
+            int count = random.nextInt(20);
+            while (bounds.size() < count) {
+                bounds.add((long) random.nextInt(10_000));
+            }
+            List<FinishedSnapshotSplitInfo> splits = splits(bounds.toArray(new Long[0]));
+            // drop some splits to leave gaps, as while the snapshot phase is still running
+            splits.removeIf(split -> random.nextInt(4) == 0);
+            Collections.shuffle(splits, random);
+            FinishedSplitRangeIndex index = new FinishedSplitRangeIndex(splits);
+
+            for (int i = 0; i < 200; i++) {
+                assertFindsSameSplit(splits, index, random.nextInt(10_200) - 100L);
+            }
+            for (Long bound : bounds) {
+                assertFindsSameSplit(splits, index, bound - 1);
+                assertFindsSameSplit(splits, index, bound);
+            }
+        }
+    }
+
+    private static void assertFindsSameSplit(
+            List<FinishedSnapshotSplitInfo> splits, FinishedSplitRangeIndex index, long key) {
+        Object[] chunkKey = {key};
+        assertSame(linearFind(splits, chunkKey), index.find(chunkKey), "key " + key);
+    }
+
+    /** The scan BinlogSplitReader used before the index. */
+    private static FinishedSnapshotSplitInfo linearFind(
+            List<FinishedSnapshotSplitInfo> splits, Object[] chunkKey) {
+        for (FinishedSnapshotSplitInfo split : splits) {
+            if (RecordUtils.splitKeyRangeContains(
+                    chunkKey, split.getSplitStart(), split.getSplitEnd())) {
+                return split;
+            }
+        }
+        return null;
+    }
+
+    /** Splits covering the whole key space, cut at the given ascending bounds. */
+    private static List<FinishedSnapshotSplitInfo> splits(Long... bounds) {
+        List<FinishedSnapshotSplitInfo> splits = new ArrayList<>();
+        Object[] start = null;
+        for (int i = 0; i <= bounds.length; i++) {
+            Object[] end = i < bounds.length ? new Object[] {bounds[i]} : null;
+            splits.add(split(i, start, end));
+            start = end;
+        }
+        return splits;
+    }
+
+    private static FinishedSnapshotSplitInfo split(int id, Object[] start, Object[] end) {
+        // the high watermark is not used to find the split
+        return new FinishedSnapshotSplitInfo(TABLE, "split-" + id, start, end, null);
+    }
+}